@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Site scanner using the Java Vector API
+ *
+ * Tests as many positions at once as the CPU has byte lanes, 32 with AVX2 and 64 with AVX-512. Each motif is kept as one
+ * mask of allowed bases per position; for a block of positions, a lane stays set while the base under it is one the mask
+ * allows, so most blocks are given up on after one or two bases of each motif. Bases are tested by comparing lanes for
+ * equality, which CPUs do on bytes in one instruction, rather than by shifting bits by the base code, which they do not. The few positions around the ends of a scan,
+ * and scans too short to fill a few blocks, are left to the automaton.
+ *
+ * This class needs Java 16 or later and the jdk.incubator.vector module, and is built apart from the rest of the program:
+ * {@code javac --add-modules jdk.incubator.vector -cp <classes> -d <classes> src-incubator/VectorSiteScanner.java}. It is
+ * only ever loaded by {@link SiteScanners}, which checks it against the automaton first.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class VectorSiteScanner implements SiteScanner
+{
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Each base code in every lane, compared against as a vector; comparing against a number is not compiled to a vector
+     * instruction by every JDK
+     */
+    private static final ByteVector[] BASES = {
+            ByteVector.broadcast(SPECIES, (byte) 0), ByteVector.broadcast(SPECIES, (byte) 1),
+            ByteVector.broadcast(SPECIES, (byte) 2), ByteVector.broadcast(SPECIES, (byte) 3)
+    };
+
+    /**
+     * The automaton for the same motifs, for short scans
+     */
+    private final MotifAutomaton automaton;
+
+    /**
+     * For each motif, the mask of the bases allowed at each of its positions, as coded by {@link MotifAutomaton#mask(char)}
+     */
+    private final byte[][] masks;
+
+    /**
+     * For each motif, the bases allowed at each position, four to a position, repeating the first when fewer are allowed;
+     * null for a motif without degenerate letters
+     */
+    private final byte[][][] choices;
+
+    /**
+     * For each motif, the first base allowed at each position: the base itself for a motif without degenerate letters
+     */
+    private final byte[][] firstBases;
+
+    /**
+     * The motif numbers, longest motif first and then lowest number first, the order in which the automaton prefers motifs
+     * ending at the same base
+     */
+    private final int[] order;
+
+    /**
+     * Length of the shortest motif, empty ones aside
+     */
+    private final int minLength;
+
+    /**
+     * Length of the longest motif
+     */
+    private final int maxLength;
+
+    /**
+     * @param automaton The automaton for the motifs scanned for
+     */
+    public VectorSiteScanner(MotifAutomaton automaton)
+    {
+        this.automaton = automaton;
+
+        int count = automaton.motifCount();
+        masks = new byte[count][];
+        choices = new byte[count][][];
+        firstBases = new byte[count][];
+        Integer[] sorted = new Integer[count];
+        int shortest = Integer.MAX_VALUE;
+
+        for (int m = 0; m < count; m++)
+        {
+            String motif = automaton.motif(m);
+            masks[m] = new byte[motif.length()];
+            firstBases[m] = new byte[motif.length()];
+            byte[][] allowed = new byte[motif.length()][4];
+            boolean degenerate = false;
+
+            for (int j = 0; j < motif.length(); j++)
+            {
+                int mask = MotifAutomaton.mask(motif.charAt(j));
+                int k = 0;
+
+                masks[m][j] = (byte) mask;
+                firstBases[m][j] = (byte) Integer.numberOfTrailingZeros(mask);
+                degenerate |= Integer.bitCount(mask) > 1;
+
+                for (int base = 0; base < 4; base++)
+                {
+                    if ((mask & (1 << base)) != 0)
+                    {
+                        allowed[j][k++] = (byte) base;
+                    }
+                }
+
+                while (k < 4)
+                {
+                    allowed[j][k++] = firstBases[m][j];
+                }
+            }
+
+            choices[m] = degenerate ? allowed : null;
+
+            if (motif.length() > 0)
+            {
+                shortest = Math.min(shortest, motif.length());
+            }
+
+            sorted[m] = m;
+        }
+
+        Arrays.sort(sorted, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return masks[a].length != masks[b].length ? masks[b].length - masks[a].length : a - b;
+            }
+        });
+
+        order = new int[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = sorted[i];
+        }
+
+        minLength = shortest == Integer.MAX_VALUE ? 0 : shortest;
+        maxLength = automaton.maxLength();
+    }
+
+    @Override
+    public int find(NucleotideBuffer seq, int from, int minEnd, int endBefore, int[] hit)
+    {
+        byte[] bases = seq.codes();
+        int limit = Math.min(seq.length(), endBefore);
+        int start = Math.max(0, from);
+        int first = Math.max(minEnd, start + minLength - 1);
+
+        if (minLength == 0 || limit - first < 4 * LANES)
+        {
+            return automaton.find(seq, from, minEnd, endBefore, hit);
+        }
+
+        // Each block tests the sites ending at LANES bases in a row
+        for (int end = first; end < limit; end += LANES)
+        {
+            // The first lane holding the end of a site, or LANES if none does
+            int lane = LANES;
+
+            if (end - maxLength + 1 >= start && end + LANES <= limit)
+            {
+                for (int m : order)
+                {
+                    byte[] mask = masks[m];
+
+                    if (mask.length > 0)
+                    {
+                        lane = Math.min(lane, firstHit(bases, end - mask.length + 1, m));
+                    }
+                }
+            }
+            else
+            {
+                for (int i = 0; i < LANES && end + i < limit && lane == LANES; i++)
+                {
+                    if (matchEnding(bases, start, end + i) >= 0)
+                    {
+                        lane = i;
+                    }
+                }
+            }
+
+            if (lane < LANES)
+            {
+                int m = matchEnding(bases, start, end + lane);
+
+                hit[0] = m;
+                return end + lane - masks[m].length + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean[] present(NucleotideBuffer seq)
+    {
+        int length = seq.length();
+
+        if (length < 4 * LANES)
+        {
+            return automaton.present(seq);
+        }
+
+        byte[] bases = seq.codes();
+        boolean[] res = new boolean[masks.length];
+
+        for (int m = 0; m < masks.length; m++)
+        {
+            byte[] mask = masks[m];
+
+            if (mask.length == 0 || mask.length > length)
+            {
+                continue;
+            }
+
+            int pos = 0;
+
+            for (; pos + LANES + mask.length - 1 <= length && !res[m]; pos += LANES)
+            {
+                res[m] = firstHit(bases, pos, m) < LANES;
+            }
+
+            for (; pos + mask.length <= length && !res[m]; pos++)
+            {
+                res[m] = matches(bases, pos, mask);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Tests a motif at LANES positions in a row
+     * @param bases The base codes
+     * @param pos The first position tested; the last base read is at pos + LANES + length - 2
+     * @param m The number of the motif
+     * @return The first lane whose position starts a site, or LANES if none does
+     */
+    private int firstHit(byte[] bases, int pos, int m)
+    {
+        return choices[m] == null ? firstHitExact(bases, pos, firstBases[m]) : firstHitDegenerate(bases, pos, choices[m]);
+    }
+
+    /**
+     * Tests a motif without degenerate letters, one comparison per base. Each test returns a lane number rather than the
+     * lanes themselves, and keeps the lanes in one variable throughout, so the JIT need not box them.
+     */
+    private static int firstHitExact(byte[] bases, int pos, byte[] motif)
+    {
+        VectorMask<Byte> res = SPECIES.maskAll(true);
+
+        for (int j = 0; j < motif.length && res.anyTrue(); j++)
+        {
+            res = res.and(ByteVector.fromArray(SPECIES, bases, pos + j).eq(BASES[motif[j]]));
+        }
+
+        return res.anyTrue() ? res.firstTrue() : LANES;
+    }
+
+    /**
+     * Tests a motif with degenerate letters, four comparisons per base
+     */
+    private static int firstHitDegenerate(byte[] bases, int pos, byte[][] allowed)
+    {
+        VectorMask<Byte> res = SPECIES.maskAll(true);
+
+        for (int j = 0; j < allowed.length && res.anyTrue(); j++)
+        {
+            ByteVector codes = ByteVector.fromArray(SPECIES, bases, pos + j);
+            byte[] any = allowed[j];
+
+            res = res.and(codes.eq(BASES[any[0]]).or(codes.eq(BASES[any[1]])).or(codes.eq(BASES[any[2]])).or(codes.eq(BASES[any[3]])));
+        }
+
+        return res.anyTrue() ? res.firstTrue() : LANES;
+    }
+
+    /**
+     * @return The motif the automaton would report for a site ending at a base, or -1 if no site starting at or after
+     * start ends there
+     */
+    private int matchEnding(byte[] bases, int start, int end)
+    {
+        for (int m : order)
+        {
+            int pos = end - masks[m].length + 1;
+
+            if (masks[m].length > 0 && pos >= start && matches(bases, pos, masks[m]))
+            {
+                return m;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean matches(byte[] bases, int pos, byte[] mask)
+    {
+        for (int j = 0; j < mask.length; j++)
+        {
+            if (((1 << bases[pos + j]) & mask[j]) == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "vector, " + LANES + " lanes";
+    }
+}
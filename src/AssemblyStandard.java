@@ -0,0 +1,613 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+
+/**
+ * A compiled assembly standard: the ends added to each result, the restriction sites removed, and everything worked out from
+ * them ahead of the first record
+ *
+ * Besides the site automaton, a profile holds, for each state of the automaton and each of the 64 codons, the state the codon
+ * leads to and the number of sites its bases complete. These are the codon junctions that make a forbidden site with the
+ * bases before them; the codon assigner reads them instead of stepping the automaton base by base. Profiles are immutable,
+ * built once per process for each standard and set of enzymes, and shared by every engine. They may also be kept in a file
+ * between runs, so a later run reads them instead of building them. The file holds the arrays as they are, read back in bulk
+ * and checked against a checksum rather than value by value, as either Java serialization or checking every state takes
+ * longer in a newly started JVM than building the tables does.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class AssemblyStandard
+{
+
+    /**
+     * The names of the standards, as used by the engine
+     */
+    public static final String[] NAMES = {"GoldenGate-1", "RFC[10]", "RFC[12]", "RFC[21]", "RFC[23]", "RFC[25]", "All Types"};
+
+    /**
+     * Written at the start of a profile file, and checked when it is read
+     */
+    private static final String FILE_FORMAT = "protein2bioBrick assembly standards 1";
+
+    /**
+     * The most entries the codon junction tables may have, 64 per state; an automaton with more states is stepped base by
+     * base instead
+     */
+    private static final int MAX_JUNCTIONS = 1 << 22;
+
+    /**
+     * The profiles of this process, keyed on the name of the standard and the patterns of its sites
+     */
+    private static final ConcurrentHashMap<String, AssemblyStandard> PROFILES = new ConcurrentHashMap<>();
+
+    /**
+     * The name of the standard
+     */
+    public final String name;
+
+    /**
+     * Prefix sequence for assembly
+     */
+    public final String prefix;
+
+    /**
+     * Suffix sequence for assembly
+     */
+    public final String suffix;
+
+    /**
+     * Restriction enzyme recognition patterns to be removed, on both strands
+     */
+    private final String[] sites;
+
+    /**
+     * Finds the sites of every pattern in one pass
+     */
+    private final MotifAutomaton scanner;
+
+    /**
+     * The state reached from each state through each codon, at state * 64 + codon; null for an automaton too large
+     */
+    private final int[] codonNext;
+
+    /**
+     * The number of sites completed by the bases of each codon from each state, at state * 64 + codon; null with codonNext
+     */
+    private final byte[] codonSites;
+
+    /**
+     * True for a profile built by this process, false for one read from a file
+     */
+    private final boolean compiledHere;
+
+    private AssemblyStandard(String name, String prefix, String suffix, String[] sites, MotifAutomaton scanner, int[] codonNext, byte[] codonSites)
+    {
+        this.name = name;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.sites = sites;
+        this.scanner = scanner;
+        this.codonNext = codonNext;
+        this.codonSites = codonSites;
+        compiledHere = false;
+    }
+
+    private AssemblyStandard(String name, String prefix, String suffix, String[] sites)
+    {
+        this.name = name;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.sites = sites;
+
+        scanner = new MotifAutomaton(sites);
+        compiledHere = true;
+
+        int states = scanner.stateCount();
+
+        if ((long) states * 64 > MAX_JUNCTIONS)
+        {
+            codonNext = null;
+            codonSites = null;
+            return;
+        }
+
+        codonNext = new int[states * 64];
+        codonSites = new byte[states * 64];
+
+        for (int s = 0; s < states; s++)
+        {
+            for (int codon = 0; codon < 64; codon++)
+            {
+                int t = s;
+                int found = 0;
+
+                for (int shift = 4; shift >= 0; shift -= 2)
+                {
+                    t = scanner.step(t, (codon >> shift) & 3);
+
+                    if (scanner.matchAt(t) >= 0)
+                    {
+                        found++;
+                    }
+                }
+
+                codonNext[s * 64 + codon] = t;
+                codonSites[s * 64 + codon] = (byte) found;
+            }
+        }
+    }
+
+    /**
+     * Turns the name of a standard, as shown in the GUI or given to the CLI, into the name used by the engine
+     * @param name The name of the standard
+     * @return The name used by the engine
+     * @throws IllegalArgumentException If the standard is unknown
+     */
+    public static String canonicalName(String name)
+    {
+        switch (name)
+        {
+            case "GoldenGate-1":
+            case "GoldenGate-RFC10":
+                return "GoldenGate-1";
+            case "All Types":
+            case "All standards":
+                return "All Types";
+            case "RFC[10]":
+            case "RFC[12]":
+            case "RFC[21]":
+            case "RFC[23]":
+            case "RFC[25]":
+                return name;
+            default:
+                throw new IllegalArgumentException("Unknown assembly standard " + name + ", expected one of " + String.join(", ", NAMES));
+        }
+    }
+
+    /**
+     * Finds the profile of a standard with the built in enzymes, building it the first time
+     * @param name The name of the standard
+     * @return The profile
+     * @throws IllegalArgumentException If the standard is unknown
+     */
+    public static AssemblyStandard forName(String name)
+    {
+        return forName(name, EnzymeRegistry.defaults());
+    }
+
+    /**
+     * Finds the profile of a standard, building it the first time. The sites of the enzymes listed in the registry are
+     * removed along with those of the standard.
+     * @param name The name of the standard
+     * @param enzymes The enzyme registry
+     * @return The profile
+     * @throws IllegalArgumentException If the standard is unknown, or the registry makes the sites too degenerate to search for
+     */
+    public static AssemblyStandard forName(String name, EnzymeRegistry enzymes)
+    {
+        String canonical = canonicalName(name);
+
+        /**
+         * Enzymes of the standard, then those of the registry file not already in it
+         */
+        List<String> reList = new ArrayList<>(Arrays.asList(enzymeNames(canonical)));
+
+        for (String listed : enzymes.listed())
+        {
+            if (!reList.contains(listed))
+            {
+                reList.add(listed);
+            }
+        }
+
+        String[] sites = enzymes.patterns(reList);
+        String key = key(canonical, sites);
+        AssemblyStandard res = PROFILES.get(key);
+
+        if (res == null)
+        {
+            res = compile(canonical, sites);
+
+            AssemblyStandard raced = PROFILES.putIfAbsent(key, res);
+
+            if (raced != null)
+            {
+                res = raced;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Builds a profile, without looking in or adding to the profiles of the process
+     * @param name The name used by the engine
+     * @param sites The patterns of the sites removed
+     * @return The profile
+     */
+    static AssemblyStandard compile(String name, String[] sites)
+    {
+        String prefix = "";
+        String suffix = "";
+
+        switch (name)
+        {
+            case "GoldenGate-1":
+            case "RFC[10]":
+                prefix = "GAATTCGCGGCCGCTTCTAG";
+                suffix = "TACTAGTAGCGGCCGCTGCAG";
+                break;
+            case "RFC[12]":
+                prefix = "GAATTCGCGGCCGCACTAGT";
+                suffix = "GCTAGCGCGGCCGCTGCAG";
+                break;
+            case "RFC[21]":
+                prefix = "GAATTCatgAGATCT";
+                suffix = "GGATCCtaaCTCGAG";
+                break;
+            case "RFC[23]":
+                prefix = "GAATTCGCGGCCGCTTCTAGA";
+                suffix = "ACTAGTAGCGGCCGCTGCAG";
+                break;
+            case "RFC[25]":
+                prefix = "GAATTCGCGGCCGCTTCTAGATGGCCGGC";
+                suffix = "ACCGGTTAATACTAGTAGCGGCCGCTGCAG";
+                break;
+        }
+
+        return new AssemblyStandard(name, prefix, suffix, sites.clone());
+    }
+
+    /**
+     * @param name The name used by the engine
+     * @return The enzymes the standard removes the sites of
+     */
+    private static String[] enzymeNames(String name)
+    {
+        switch (name)
+        {
+            case "GoldenGate-1":
+                return BioBrickEngine.goldenGateS;
+            case "RFC[12]":
+                return BioBrickEngine.rfcS12;
+            case "RFC[21]":
+                return BioBrickEngine.rfcS21;
+            case "RFC[25]":
+                return BioBrickEngine.rfcS25;
+            case "All Types":
+                return BioBrickEngine.rfcSall;
+            default:
+                return BioBrickEngine.rfcS10;
+        }
+    }
+
+    private static String key(String name, String[] sites)
+    {
+        return name + '\t' + String.join(",", sites);
+    }
+
+    /**
+     * Reads the profiles kept in a file, adding them to those of the process. A profile is only ever used for the sites it
+     * was built for, so one built for another registry is kept but not used.
+     * @param file The profile file
+     * @return The number of profiles read
+     * @throws IOException If the file cannot be read, or was not written by {@link #saveProfiles(File)} of this version
+     */
+    public static int loadProfiles(File file) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // The checksum of everything else takes up the last eight bytes
+        if (bytes.length < 8 || ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != checksum(bytes, bytes.length - 8))
+        {
+            throw new IOException("Damaged assembly standard profile file");
+        }
+
+        List<AssemblyStandard> read = read(ByteBuffer.wrap(bytes, 0, bytes.length - 8));
+
+        for (AssemblyStandard profile : read)
+        {
+            PROFILES.putIfAbsent(key(profile.name, profile.sites), profile);
+        }
+
+        return read.size();
+    }
+
+    /**
+     * Writes every profile of the process to a file, by way of a temporary file, so a reader never sees half of it
+     * @param file The profile file
+     * @throws IOException If the file cannot be written
+     */
+    public static void saveProfiles(File file) throws IOException
+    {
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, new ArrayList<>(PROFILES.values()));
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+            {
+                bytes.writeTo(out);
+                out.writeLong(checksum(bytes.toByteArray(), bytes.size()));
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    private static long checksum(byte[] bytes, int length)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes profiles to a stream
+     */
+    static void write(OutputStream stream, List<AssemblyStandard> profiles) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(stream);
+
+        writeString(out, FILE_FORMAT);
+        out.writeInt(profiles.size());
+
+        for (AssemblyStandard profile : profiles)
+        {
+            writeString(out, profile.name);
+            writeString(out, profile.prefix);
+            writeString(out, profile.suffix);
+            profile.scanner.write(out);
+
+            // The sites are those of the automaton, so are not written again
+            out.writeBoolean(profile.codonNext != null);
+
+            if (profile.codonNext != null)
+            {
+                writeInts(out, profile.codonNext);
+                out.write(profile.codonSites);
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads profiles written by {@link #write(OutputStream, List)}
+     * @throws IOException If the profiles are damaged, or were written by another version
+     */
+    static List<AssemblyStandard> read(ByteBuffer in) throws IOException
+    {
+        List<AssemblyStandard> res = new ArrayList<>();
+
+        try
+        {
+            if (!FILE_FORMAT.equals(readString(in)))
+            {
+                throw new IOException("Not an assembly standard profile file");
+            }
+
+            int count = readLength(in, 1);
+
+            for (int i = 0; i < count; i++)
+            {
+                String name = canonicalName(readString(in));
+                String prefix = readString(in);
+                String suffix = readString(in);
+                MotifAutomaton scanner = MotifAutomaton.read(in);
+                String[] sites = new String[scanner.motifCount()];
+                int[] codonNext = null;
+                byte[] codonSites = null;
+
+                for (int m = 0; m < sites.length; m++)
+                {
+                    sites[m] = scanner.motif(m);
+                }
+
+                if (in.get() != 0)
+                {
+                    codonNext = readInts(in);
+                    codonSites = new byte[codonNext.length];
+                    in.get(codonSites);
+                }
+
+                AssemblyStandard profile = new AssemblyStandard(name, prefix, suffix, sites, scanner, codonNext, codonSites);
+
+                if (!profile.intact())
+                {
+                    throw new IOException("Damaged assembly standard profile " + name);
+                }
+
+                res.add(profile);
+            }
+
+            if (in.hasRemaining())
+            {
+                throw new IOException("Damaged assembly standard profile file");
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException ex)
+        {
+            throw new IOException("Damaged assembly standard profile file", ex);
+        }
+
+        return res;
+    }
+
+    /**
+     * @return True if the junction tables of a profile read from a file fit its automaton
+     */
+    private boolean intact()
+    {
+        long entries = (long) scanner.stateCount() * 64;
+
+        return codonNext == null ? entries > MAX_JUNCTIONS : codonNext.length == entries;
+    }
+
+    /**
+     * Writes an array of numbers as its length and its values, all at once
+     */
+    static void writeInts(DataOutputStream out, int[] values) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4);
+        bytes.asIntBuffer().put(values);
+
+        out.writeInt(values.length);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Reads an array of numbers written by {@link #writeInts(DataOutputStream, int[])}, all at once
+     */
+    static int[] readInts(ByteBuffer in)
+    {
+        int[] res = new int[readLength(in, 4)];
+
+        in.asIntBuffer().get(res);
+        in.position(in.position() + res.length * 4);
+        return res;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in)
+    {
+        byte[] bytes = new byte[readLength(in, 1)];
+
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the length of an array, checking that the buffer still holds that many items
+     * @param in The buffer
+     * @param itemSize The bytes each item takes up at least
+     * @return The length
+     * @throws BufferUnderflowException If the buffer is too short
+     */
+    static int readLength(ByteBuffer in, int itemSize)
+    {
+        int length = in.getInt();
+
+        if (length < 0 || (long) length * itemSize > in.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+
+        return length;
+    }
+
+    /**
+     * @return True if this profile was built by this process, false if it was read from a file
+     */
+    public boolean compiledHere()
+    {
+        return compiledHere;
+    }
+
+    /**
+     * @return The patterns of the sites removed, on both strands
+     */
+    public List<String> sites()
+    {
+        return Collections.unmodifiableList(Arrays.asList(sites));
+    }
+
+    /**
+     * @return The automaton finding the sites removed
+     */
+    public MotifAutomaton scanner()
+    {
+        return scanner;
+    }
+
+    /**
+     * Moves the site automaton on by the three bases of a codon
+     * @param state The current state
+     * @param codon The codon number, as packed by {@link CodonTable}
+     * @return The next state
+     */
+    int afterCodon(int state, int codon)
+    {
+        if (codonNext != null)
+        {
+            return codonNext[state * 64 + codon];
+        }
+
+        int t = state;
+
+        for (int shift = 4; shift >= 0; shift -= 2)
+        {
+            t = scanner.step(t, (codon >> shift) & 3);
+        }
+
+        return t;
+    }
+
+    /**
+     * Counts the sites the bases of a codon complete
+     * @param state The state before the codon
+     * @param codon The codon number, as packed by {@link CodonTable}
+     * @return The number of bases of the codon on which a site ends
+     */
+    int sitesInCodon(int state, int codon)
+    {
+        if (codonSites != null)
+        {
+            return codonSites[state * 64 + codon];
+        }
+
+        int t = state;
+        int found = 0;
+
+        for (int shift = 4; shift >= 0; shift -= 2)
+        {
+            t = scanner.step(t, (codon >> shift) & 3);
+
+            if (scanner.matchAt(t) >= 0)
+            {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
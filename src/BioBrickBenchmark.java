@@ -0,0 +1,385 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+
+/**
+ * Microbenchmarks for the core sequence routines
+ *
+ * Times revTrnsl, newCodonRandom, trnsL, findFrame, assessCodons, the repeat check, the restriction site loop and the whole of
+ * processSeq on synthetic proteins from 100 to 35,000 amino acids. Each case is warmed up, then run for a fixed time on one
+ * thread; throughput is reported together with the bytes allocated per operation, where the JVM can measure them.
+ * Run it from the same jar as the program, e.g. {@code java -cp protein2bioBrick.jar BioBrickBenchmark --time 2000}
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class BioBrickBenchmark
+{
+
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+
+    /**
+     * Results are folded in here so the JIT cannot drop the work being timed
+     */
+    private static volatile long blackhole;
+
+    /**
+     * One routine, timed on one input
+     */
+    private abstract static class Case
+    {
+        final String name;
+
+        Case(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Runs the routine once
+         * @return A value depending on the result
+         */
+        abstract long op();
+    }
+
+    private BioBrickBenchmark()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        long warmupMillis = 500;
+        long timeMillis = 1000;
+        int[] sizes = {100, 1000, 10000, 35000};
+        String filter = null;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--warmup":
+                    warmupMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--time":
+                    timeMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--sizes":
+                    String[] parts = args[++i].split(",");
+                    sizes = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++)
+                    {
+                        sizes[j] = Integer.parseInt(parts[j].trim());
+                    }
+                    break;
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                default:
+                    System.err.println("Usage: BioBrickBenchmark [--warmup <ms>] [--time <ms>] [--sizes 100,1000,...] [--filter <name>]");
+                    System.exit(2);
+            }
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%-16s %8s %14s %14s %14s", "benchmark", "aa", "ops/s", "us/op", "bytes/op"));
+
+        for (int size : sizes)
+        {
+            for (Case c : cases(size))
+            {
+                if (filter == null || c.name.contains(filter))
+                {
+                    measure(c, size, warmupMillis, timeMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the cases for one protein size. Every input is made from a fixed seed, so runs can be compared.
+     * @param size The length of the synthetic protein
+     * @return The cases
+     */
+    private static List<Case> cases(int size)
+    {
+        Random gen = new Random(size);
+        StringBuilder prot = new StringBuilder(size);
+        prot.append('M');
+
+        while (prot.length() < size)
+        {
+            prot.append(AMINO_ACIDS.charAt(gen.nextInt(AMINO_ACIDS.length())));
+        }
+
+        final String protein = prot.toString();
+
+        final NucleotideBuffer nuc = new NucleotideBuffer(size * 3);
+
+        for (int i = 0; i < size; i++)
+        {
+            nuc.setCodon(i * 3, BioBrickEngine.revTrnslCodon(protein.charAt(i), 0.0));
+        }
+
+        final String dna = nuc.toString();
+
+        final BioBrickEngine engine = new BioBrickEngine("All Types", true);
+        final SplittableRandom random = new SplittableRandom(size);
+
+        List<Case> res = new ArrayList<>();
+
+        res.add(new Case("revTrnsl")
+        {
+            @Override
+            long op()
+            {
+                long h = 0;
+                for (int i = 0; i < protein.length(); i++)
+                {
+                    h += BioBrickEngine.revTrnslCodon(protein.charAt(i), 0.0);
+                }
+                return h;
+            }
+        });
+
+        res.add(new Case("newCodonRandom")
+        {
+            @Override
+            long op()
+            {
+                long h = 0;
+                for (int i = 0; i + 2 < nuc.length(); i += 3)
+                {
+                    h += BioBrickEngine.newCodonRandom(nuc.codonIndex(i), 100, random);
+                }
+                return h;
+            }
+        });
+
+        res.add(new Case("trnsL")
+        {
+            @Override
+            long op()
+            {
+                return BioBrickEngine.trnsL(dna).length();
+            }
+        });
+
+        res.add(new Case("findFrame")
+        {
+            @Override
+            long op()
+            {
+                long h = 0;
+                for (int i = 0; i < nuc.length() - 8; i++)
+                {
+                    h += BioBrickEngine.findFrame(8, i)[0];
+                }
+                return h;
+            }
+        });
+
+        res.add(new Case("assessCodons")
+        {
+            @Override
+            long op()
+            {
+                return BioBrickEngine.assessCodons(nuc)[0];
+            }
+        });
+
+        res.add(new Case("repeatCheck")
+        {
+            @Override
+            long op()
+            {
+                NucleotideBuffer work = nuc.copy();
+                engine.removeRepeats(work, new SplittableRandom(1), new RecordOutput(1), null, null);
+                return work.codonIndex(0);
+            }
+        });
+
+        res.add(new Case("siteLoop")
+        {
+            @Override
+            long op()
+            {
+                NucleotideBuffer work = nuc.copy();
+                engine.removeSites(work, new SplittableRandom(1), new RecordOutput(1), null, null);
+                return work.codonIndex(0);
+            }
+        });
+
+        // Scanning for the enzymes of every standard, alone and with some fifty more, degenerate ones included
+        List<String> allEnzymes = new ArrayList<>(Arrays.asList("HindIII", "KpnI", "SacI", "SalI", "SmaI", "NcoI", "NdeI", "SphI", "ClaI", "EcoRV",
+                "HpaI", "MluI", "NsiI", "ApaI", "AscI", "PacI", "SwaI", "FseI", "PmeI", "SbfI", "AflII", "MfeI", "StuI", "ScaI",
+                "DraI", "BspHI", "AatII", "BsiWI", "BsmI", "BbsI", "AarI", "BtgZI", "SfiI", "BglI", "XmnI", "DraIII", "AvaI",
+                "HincII", "BsrFI", "BanII", "StyI", "AccI", "HaeII", "EaeI", "BsiHKAI", "MspA1I", "AvaII", "Fnu4HI", "BstNI"));
+
+        allEnzymes.addAll(Arrays.asList(BioBrickEngine.rfcSall));
+
+        final MotifAutomaton standardScanner = new MotifAutomaton(EnzymeRegistry.defaults().patterns(Arrays.asList(BioBrickEngine.rfcSall)));
+        final MotifAutomaton registryScanner = new MotifAutomaton(EnzymeRegistry.defaults().patterns(allEnzymes));
+
+        res.add(new Case("siteScan")
+        {
+            @Override
+            long op()
+            {
+                return standardScanner.present(nuc).length;
+            }
+        });
+
+        res.add(new Case("siteScanRegistry")
+        {
+            @Override
+            long op()
+            {
+                return registryScanner.present(nuc).length;
+            }
+        });
+
+        // The same scans with the vector scanner, when it has been built and the JVM was started with its module
+        final SiteScanner standardVector = SiteScanners.accelerated(standardScanner);
+        final SiteScanner registryVector = SiteScanners.accelerated(registryScanner);
+
+        if (standardVector != standardScanner)
+        {
+            res.add(new Case("siteScanVector")
+            {
+                @Override
+                long op()
+                {
+                    return standardVector.present(nuc).length;
+                }
+            });
+        }
+
+        if (registryVector != registryScanner)
+        {
+            res.add(new Case("siteScanRegistryVector")
+            {
+                @Override
+                long op()
+                {
+                    return registryVector.present(nuc).length;
+                }
+            });
+        }
+
+        // Setting up the standard with the enzymes of the registry, built anew and read back from a profile file
+        final String[] registrySites = EnzymeRegistry.defaults().patterns(allEnzymes);
+        final ByteArrayOutputStream profileBytes = new ByteArrayOutputStream();
+
+        try
+        {
+            AssemblyStandard.write(profileBytes, Arrays.asList(AssemblyStandard.compile("All Types", registrySites)));
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        res.add(new Case("standardCompile")
+        {
+            @Override
+            long op()
+            {
+                return AssemblyStandard.compile("All Types", registrySites).scanner().stateCount();
+            }
+        });
+
+        res.add(new Case("standardLoad")
+        {
+            @Override
+            long op()
+            {
+                try
+                {
+                    return AssemblyStandard.read(ByteBuffer.wrap(profileBytes.toByteArray())).get(0).scanner().stateCount();
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+
+        res.add(new Case("processSeq")
+        {
+            @Override
+            long op()
+            {
+                return engine.processSeq(protein, ">benchmark", 1).seqNumber;
+            }
+        });
+
+        return res;
+    }
+
+    /**
+     * Warms up and times one case, printing a line of results
+     */
+    private static void measure(Case c, int size, long warmupMillis, long timeMillis)
+    {
+        long h = 0;
+        long end = System.nanoTime() + warmupMillis * 1000000L;
+
+        while (System.nanoTime() < end)
+        {
+            h += c.op();
+        }
+
+        long ops = 0;
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        end = start + timeMillis * 1000000L;
+        long now;
+
+        do
+        {
+            h += c.op();
+            ops++;
+            now = System.nanoTime();
+        }
+        while (now < end);
+
+        long bytesAfter = allocatedBytes();
+        blackhole += h;
+
+        double seconds = (now - start) / 1e9;
+        String bytesPerOp = bytesBefore < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", (double) (bytesAfter - bytesBefore) / ops);
+
+        System.out.println(String.format(Locale.ROOT, "%-16s %8d %14.1f %14.2f %14s", c.name, size, ops / seconds, seconds * 1e6 / ops, bytesPerOp));
+    }
+
+    /**
+     * @return The bytes allocated so far by this thread, or -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,451 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+
+/**
+ * Command line entry point for protein2bioBrick
+ *
+ * Runs a job without a display, for use on compute nodes and in scheduled pipelines. This class does not touch JavaFX,
+ * so it can be started with a plain JRE, e.g. {@code java -cp protein2bioBrick.jar BioBrickCli -i proteome.fasta -o job1}
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class BioBrickCli
+{
+
+    private BioBrickCli()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        /**
+         * The FASTA file to be read
+         */
+        String inputName = null;
+
+        /**
+         * The job directory, wherein files are written. Defaults to a timestamp, as in the GUI
+         */
+        String dirName = Long.toString(System.currentTimeMillis());
+
+        /**
+         * Value obtained from the user's choice of assembly standard
+         */
+        String assmStandard = "GoldenGate-RFC10";
+
+        /**
+         * Toggle to determine if the RFC prefix and suffixes should be added
+         */
+        boolean addEnds = true;
+
+        /**
+         * How often the output files are flushed
+         */
+        FlushPolicy flushPolicy = FlushPolicy.BATCH;
+
+        /**
+         * The number of records between flushes
+         */
+        int flushInterval = 1000;
+
+        /**
+         * The number of worker threads, one per core unless told otherwise
+         */
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * The length of the motifs checked for repetition
+         */
+        int repeatLength = 8;
+
+        /**
+         * The protein length above which records are split into segments; 0 never splits
+         */
+        int segmentLength = 0;
+
+        /**
+         * Toggle for the vector site scanner
+         */
+        boolean vectorScan = false;
+
+        /**
+         * The random seed, or null to draw a new one for the job
+         */
+        Long seed = null;
+
+        /**
+         * Toggle for verifying the stretches changed by the repeat and site checks
+         */
+        boolean verifyEdits = true;
+
+        /**
+         * How the codons are first chosen
+         */
+        CodonStrategy codonStrategy = CodonStrategy.TOP;
+
+        /**
+         * The codon usage file of the host, or null for the built in E. coli table
+         */
+        String codonTableName = null;
+
+        /**
+         * The enzyme registry file, or null for the built in enzymes
+         */
+        String enzymeFileName = null;
+
+        /**
+         * The file the compiled assembly standards are kept in between runs, or null to build them every run
+         */
+        String profileFileName = null;
+
+        /**
+         * The number of finished records kept in memory
+         */
+        int cacheSize = 1024;
+
+        /**
+         * Toggle for keeping finished records on disk in the job directory
+         */
+        boolean diskCache = false;
+
+        /**
+         * Toggle for writing per stage timings and counters
+         */
+        boolean collectStats = false;
+
+        /**
+         * Toggle for writing the output files gzip compressed
+         */
+        boolean compressOutput = false;
+
+        /**
+         * The format of the report file
+         */
+        ReportFormat reportFormat = ReportFormat.TEXT;
+
+        /**
+         * How much of each record goes into the report file
+         */
+        ReportVerbosity verbosity = ReportVerbosity.EVENT;
+
+        /**
+         * Toggle for scoring the DNA for synthesis
+         */
+        boolean synthesisCheck = false;
+
+        /**
+         * The length of the windows whose GC content is checked
+         */
+        int gcWindow = 50;
+
+        /**
+         * The lowest and highest GC content allowed in a window
+         */
+        double gcMin = 0.25;
+        double gcMax = 0.75;
+
+        /**
+         * The longest run of one base allowed
+         */
+        int maxHomopolymer = 8;
+
+        /**
+         * The number of records between checkpoints; 0 keeps no journal
+         */
+        int checkpointInterval = 0;
+
+        /**
+         * Toggle for carrying on from the last checkpoint of the job
+         */
+        boolean resume = false;
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-i":
+                    case "--input":
+                        inputName = value(args, ++i);
+                        break;
+                    case "-o":
+                    case "--output":
+                        dirName = value(args, ++i);
+                        break;
+                    case "-s":
+                    case "--standard":
+                        assmStandard = value(args, ++i);
+                        break;
+                    case "--ends":
+                        addEnds = true;
+                        break;
+                    case "--no-ends":
+                        addEnds = false;
+                        break;
+                    case "--flush":
+                        flushPolicy = FlushPolicy.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--flush-interval":
+                        flushInterval = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "-k":
+                    case "--repeat-length":
+                        repeatLength = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--segment":
+                        segmentLength = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--verify":
+                        verifyEdits = true;
+                        break;
+                    case "--no-verify":
+                        verifyEdits = false;
+                        break;
+                    case "--codon-table":
+                        codonTableName = value(args, ++i);
+                        break;
+                    case "--vector-scan":
+                        vectorScan = true;
+                        break;
+                    case "--enzymes":
+                        enzymeFileName = value(args, ++i);
+                        break;
+                    case "--gzip":
+                        compressOutput = true;
+                        break;
+                    case "--profile-cache":
+                        profileFileName = value(args, ++i);
+                        break;
+                    case "--cache-size":
+                        cacheSize = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--disk-cache":
+                        diskCache = true;
+                        break;
+                    case "--report-format":
+                        reportFormat = ReportFormat.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--verbosity":
+                        verbosity = ReportVerbosity.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--stats":
+                        collectStats = true;
+                        break;
+                    case "--synthesis-check":
+                        synthesisCheck = true;
+                        break;
+                    case "--gc-window":
+                        gcWindow = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--gc-range":
+                        String[] range = value(args, ++i).split(",");
+                        if (range.length != 2)
+                        {
+                            fail("GC range must be given as <min>,<max>, e.g. 0.25,0.75");
+                        }
+                        gcMin = Double.parseDouble(range[0].trim());
+                        gcMax = Double.parseDouble(range[1].trim());
+                        break;
+                    case "--max-homopolymer":
+                        maxHomopolymer = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--checkpoint":
+                        checkpointInterval = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--resume":
+                        resume = true;
+                        break;
+                    case "--codons":
+                        codonStrategy = CodonStrategy.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "-h":
+                    case "--help":
+                        usage();
+                        return;
+                    default:
+                        fail("Unknown option " + args[i]);
+                }
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            fail("Bad option value: " + ex.getMessage());
+        }
+
+        if (inputName == null)
+        {
+            fail("No input file given");
+        }
+
+        File input = new File(inputName);
+
+        if (!input.isFile())
+        {
+            fail("Cannot read input file " + inputName);
+        }
+
+        EnzymeRegistry enzymes = EnzymeRegistry.defaults();
+
+        if (enzymeFileName != null)
+        {
+            try
+            {
+                enzymes = EnzymeRegistry.load(new File(enzymeFileName));
+            }
+            catch (IOException ex)
+            {
+                fail("Cannot read enzyme registry " + enzymeFileName + ": " + ex.getMessage());
+            }
+            catch (IllegalArgumentException ex)
+            {
+                fail("Bad enzyme registry: " + ex.getMessage());
+            }
+        }
+
+        File profileFile = profileFileName == null ? null : new File(profileFileName);
+
+        // A missing or stale profile file only costs the time to build the standard again
+        if (profileFile != null && profileFile.isFile())
+        {
+            try
+            {
+                AssemblyStandard.loadProfiles(profileFile);
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Ignoring profile cache " + profileFileName + ": " + ex.getMessage());
+            }
+        }
+
+        BioBrickEngine engine = null;
+
+        try
+        {
+            engine = new BioBrickEngine(assmStandard, addEnds, enzymes);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            fail(ex.getMessage());
+        }
+
+        if (profileFile != null && engine.standard.compiledHere())
+        {
+            try
+            {
+                AssemblyStandard.saveProfiles(profileFile);
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Cannot write profile cache " + profileFileName + ": " + ex.getMessage());
+            }
+        }
+
+        engine.flushPolicy = flushPolicy;
+        engine.flushInterval = flushInterval;
+        engine.threads = threads;
+        engine.repeatLength = repeatLength;
+        engine.segmentLength = segmentLength;
+        engine.vectorScan = vectorScan;
+        engine.verifyEdits = verifyEdits;
+        engine.codonStrategy = codonStrategy;
+        engine.cacheSize = cacheSize;
+        engine.diskCache = diskCache;
+        engine.collectStats = collectStats;
+        engine.compressOutput = compressOutput;
+        engine.reportFormat = reportFormat;
+        engine.verbosity = verbosity;
+        engine.checkpointInterval = checkpointInterval;
+        engine.synthesisCheck = synthesisCheck;
+        engine.gcWindow = gcWindow;
+        engine.gcMin = gcMin;
+        engine.gcMax = gcMax;
+        engine.maxHomopolymer = maxHomopolymer;
+        engine.resume = resume;
+
+        if (codonTableName != null)
+        {
+            try
+            {
+                engine.hostCodons = CodonTable.load(new File(codonTableName));
+            }
+            catch (IOException ex)
+            {
+                fail("Cannot read codon table " + codonTableName + ": " + ex.getMessage());
+            }
+            catch (IllegalArgumentException ex)
+            {
+                fail("Bad codon table: " + ex.getMessage());
+            }
+        }
+        if (seed != null)
+        {
+            engine.seed = seed;
+        }
+
+        try
+        {
+            engine.run(input, new File(dirName));
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Job " + dirName + " failed: " + ex.getMessage());
+            System.exit(1);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            fail(ex.getMessage());
+        }
+
+        System.out.println(engine.seqCount + " sequences written to " + dirName);
+    }
+
+    /**
+     * Fetches the value following an option
+     * @param args The command line arguments
+     * @param i The position of the value
+     * @return The value of the option
+     */
+    private static String value(String[] args, int i)
+    {
+        if (i >= args.length)
+        {
+            fail("Missing value for option " + args[i - 1]);
+        }
+
+        return args[i];
+    }
+
+    private static void fail(String message)
+    {
+        System.err.println(message);
+        usage();
+        System.exit(2);
+    }
+
+    private static void usage()
+    {
+        System.err.println("Usage: BioBrickCli -i <input.fasta> [-o <job directory>] [-s <assembly standard>] [--ends | --no-ends]");
+        System.err.println("       [--flush record|batch|end] [--flush-interval <records>] [-t <threads>] [-k <repeat length>]");
+        System.err.println("       [--seed <number>] [--verify | --no-verify] [--codons top|avoid]");
+        System.err.println("       [--codon-table <codon usage file>] [--enzymes <enzyme registry file>] [--profile-cache <file>]");
+        System.err.println("       [--cache-size <records>] [--disk-cache] [--gzip]");
+        System.err.println("       [--stats] [--report-format text|jsonl|tsv] [--verbosity summary|record|event]");
+        System.err.println("       [--checkpoint <records>] [--resume] [--segment <amino acids>] [--vector-scan]");
+        System.err.println("       [--synthesis-check] [--gc-window <bases>] [--gc-range <min>,<max>] [--max-homopolymer <bases>]");
+        System.err.println("Assembly standards: GoldenGate-RFC10, RFC[10], RFC[12], RFC[21], RFC[23], RFC[25], All standards");
+    }
+}
@@ -0,0 +1,2003 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Headless processing engine for protein2bioBrick
+ *
+ * Holds the reverse translation and restriction site removal routines, together with the FASTA read loop, that were previously
+ * run from inside the JavaFX open file handler. A job can therefore be run from the command line as well as from the GUI.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class BioBrickEngine
+{
+
+    /**
+     * An array with restriction enzyme recognition sites for RFC10 standard. Also used for RFC23. The enzymes are looked up in
+     * an {@link EnzymeRegistry}, which adds the sites of the other strand.
+     */
+    public static final String[] rfcS10 = {"EcoRI", "XbaI", "SpeI", "PstI", "NotI"};
+
+    /**
+     * An array with restriction enzyme recognition sites for RFC12 standard
+     */
+    public static final String[] rfcS12 = {"EcoRI", "XbaI", "SpeI", "PstI", "NotI", "NheI", "PvuII", "XhoI", "AvrII", "SapI"};
+
+    /**
+     * An array with restriction enzyme recognition sites for RFC21 standard
+     */
+    public static final String[] rfcS21 = {"EcoRI", "BglII", "BamHI", "XhoI"};
+
+    /**
+     * An array with restriction enzyme recognition sites for RFC25 standard
+     */
+    public static final String[] rfcS25 = {"EcoRI", "XbaI", "SpeI", "PstI", "NotI", "NgoMIV", "AgeI"};
+
+    /**
+     * An array with restriction enzyme recognition sites for the GoldenGate standard
+     */
+    public static final String[] goldenGateS = {"EcoRI", "XbaI", "SpeI", "PstI", "NotI", "BsaI", "BsmBI"};
+
+    /**
+     * An array with restriction enzyme recognition sites for all standards
+     */
+    public static final String[] rfcSall = {"EcoRI", "XbaI", "SpeI", "PstI", "NotI", "NgoMIV", "AgeI", "BglII", "BamHI", "XhoI", "NheI", "PvuII", "AvrII", "SapI"};
+
+    public static String[] aminoArr = {"M", "G", "A", "V", "I", "L", "S", "T", "N", "Q", "D", "E", "H", "K", "R", "C", "F", "W", "Y", "P", "*", "X"};
+
+    public static String[][] codonArr = new String[aminoArr.length][];
+
+    /**
+     * The compiled codon table, built once for the life of the process
+     */
+    public static final CodonTable codonTable = createCodonTable();
+
+    /**
+     * A counter to track the number of sequences processed
+     */
+    public int seqCount = 0;
+
+    /**
+     * Toggle to determine, based on user input, if the RFC prefix and suffixes should be added
+     */
+    public boolean addEnds = false;
+
+    /**
+     * How often the output files are flushed while the job runs
+     */
+    public FlushPolicy flushPolicy = FlushPolicy.RECORD;
+
+    /**
+     * The number of records between flushes, used with the batch flush policy
+     */
+    public int flushInterval = 1000;
+
+    /**
+     * The number of worker threads records are spread over. With one thread, records are processed on the calling thread.
+     */
+    public int threads = 1;
+
+    /**
+     * The largest number of records in flight at once when running on several threads.
+     * Finished records wait here until every record before them has been written.
+     */
+    public int reorderWindow = 256;
+
+    /**
+     * The length of the motifs checked for repetition within each sequence
+     */
+    public int repeatLength = 8;
+
+    /**
+     * Proteins longer than this many amino acids are split into segments of about this length, repaired side by side and
+     * joined up afterwards; 0 never splits
+     */
+    public int segmentLength = 0;
+
+    /**
+     * Toggle for scanning for sites with the vector scanner, when it has been built and the jdk.incubator.vector module is
+     * available; the automaton is used otherwise. The results are the same either way.
+     */
+    public boolean vectorScan = false;
+
+    /**
+     * Toggle for scoring the DNA for synthesis: codon changes that would put a GC window out of range or make a homopolymer
+     * run too long are turned down, and the finished DNA is reported with its GC content and codon adaptation index
+     */
+    public boolean synthesisCheck = false;
+
+    /**
+     * The length of the windows whose GC content is checked
+     */
+    public int gcWindow = 50;
+
+    /**
+     * The lowest GC content allowed in a window, from 0 to 1
+     */
+    public double gcMin = 0.25;
+
+    /**
+     * The highest GC content allowed in a window, from 0 to 1
+     */
+    public double gcMax = 0.75;
+
+    /**
+     * The longest run of one base allowed
+     */
+    public int maxHomopolymer = 8;
+
+    /**
+     * Site fixes after which a site still present is fixed without regard to the synthesis scores, so that scoring never
+     * leaves a site in place
+     */
+    private static final int SCREENED_ATTEMPTS = 50;
+
+    /**
+     * Toggle for the verification pass: after the repeat and site checks, the stretches around every changed codon are
+     * checked again for sites and repeats, and fixed until none are left.
+     */
+    public boolean verifyEdits = true;
+
+    /**
+     * How the codons of each record are first chosen
+     */
+    public CodonStrategy codonStrategy = CodonStrategy.TOP;
+
+    /**
+     * The codon table of the host organism, the built in E. coli table unless one is loaded
+     */
+    public CodonTable hostCodons = codonTable;
+
+    /**
+     * The number of finished records kept in memory, so a protein seen again is not processed again. 0 turns the cache off.
+     */
+    public int cacheSize = 1024;
+
+    /**
+     * Toggle to also keep finished records on disk, in the cache folder of the job directory, for later jobs run there
+     */
+    public boolean diskCache = false;
+
+    /**
+     * Toggle to time each stage of every record and count codon substitutions, written to the stats files of the job.
+     * When off, the only cost is a check of this flag per record.
+     */
+    public boolean collectStats = false;
+
+    /**
+     * Toggle to write the result, report, back translation and events files gzip compressed, compressing on a thread of
+     * their own
+     */
+    public boolean compressOutput = false;
+
+    /**
+     * The format of the report file
+     */
+    public ReportFormat reportFormat = ReportFormat.TEXT;
+
+    /**
+     * How much of each record goes into the report file
+     */
+    public ReportVerbosity verbosity = ReportVerbosity.EVENT;
+
+    /**
+     * The seed from which every record's random codon choices are drawn. The same input and seed give the same DNA,
+     * on any number of threads.
+     */
+    public long seed = new Random().nextLong();
+
+    /**
+     * Told of the progress of the job after each record is read, or null
+     */
+    public ProgressListener progressListener;
+
+    /**
+     * The number of records between checkpoints written to the journal in the job directory; 0 writes none, unless the
+     * job is resumed, when {@link #DEFAULT_CHECKPOINT_INTERVAL} is used
+     */
+    public int checkpointInterval = 0;
+
+    /**
+     * True to carry on from the last checkpoint of an earlier run of the job, if there is one. The run fails if the input,
+     * or a setting that shapes the output, differs from the earlier run.
+     */
+    public boolean resume = false;
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * The assembly standard chosen for this job
+     */
+    public final String assmStandard;
+
+    /**
+     * The enzymes known to this job. Besides the enzymes of the assembly standard, those listed in a registry file have their
+     * sites removed.
+     */
+    public final EnzymeRegistry enzymes;
+
+    /**
+     * The compiled profile of the assembly standard, shared with every other engine for the same standard and enzymes
+     */
+    public final AssemblyStandard standard;
+
+    /**
+     * Finds the sites of every enzyme of the standard in one pass, built once for the process
+     */
+    private final MotifAutomaton reScanner;
+
+    /**
+     * Finds sites for the repeat and site checks: reScanner, or the vector scanner for the same motifs
+     */
+    private SiteScanner siteFinder;
+
+    /**
+     * The worker pool of the job running, or null when running on a single thread
+     */
+    private ExecutorService pool;
+
+    /**
+     * The result cache of the job running, or null when caching is off
+     */
+    private ResultCache cache;
+
+    /**
+     * The statistics of the job running, or null when they are not collected
+     */
+    private JobStats jobStats;
+
+    /**
+     * Set by {@link #cancel()}; the job stops reading records once it is set
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The number of records written so far in this job
+     */
+    private int recordsWritten;
+
+    /**
+     * The offset in the input just after the last record written
+     */
+    private long writtenEnd;
+
+    /**
+     * The input of the job running, for reporting progress as records are written
+     */
+    private FastaReader reader;
+
+    /**
+     * The length of the input file of the job running
+     */
+    private long inputLength;
+
+    /**
+     * The journal of the job, or null if it keeps none
+     */
+    private Checkpoint checkpoint;
+
+    /**
+     * The number of records between checkpoints in this job
+     */
+    private int checkpointEvery;
+
+    /**
+     * Prefix sequence for assembly
+     */
+    private final String prefix;
+
+    /**
+     * Suffix sequence for assembly
+     */
+    private final String suffix;
+
+    /**
+     * Sets up an engine for one job, determining the sites to be removed and the ends to be added from the assembly standard.
+     * @param assmStandard The name of the assembly standard, as shown in the GUI
+     * @param addEnds True if the prefix and suffix for the standard should be added to each result
+     * @throws IllegalArgumentException If the standard is unknown
+     */
+    public BioBrickEngine(String assmStandard, boolean addEnds)
+    {
+        this(assmStandard, addEnds, EnzymeRegistry.defaults());
+    }
+
+    /**
+     * Sets up an engine for one job, with the enzymes of a registry file
+     * @param assmStandard The name of the assembly standard, as shown in the GUI
+     * @param addEnds True if the prefix and suffix for the standard should be added to each result
+     * @param enzymes The enzyme registry; the sites of the enzymes it lists are removed along with those of the standard
+     * @throws IllegalArgumentException If the standard is unknown, or the registry makes the sites too degenerate to search for
+     */
+    public BioBrickEngine(String assmStandard, boolean addEnds, EnzymeRegistry enzymes)
+    {
+        this.assmStandard = assmStandard;
+        this.addEnds = addEnds;
+        this.enzymes = enzymes;
+
+        standard = AssemblyStandard.forName(assmStandard, enzymes);
+        prefix = standard.prefix;
+        suffix = standard.suffix;
+        reScanner = standard.scanner();
+        siteFinder = reScanner;
+    }
+
+    /**
+     * Runs a complete job: reads every record of a FASTA file, and streams the results, runtime report and back translation into the job directory.
+     * The input may be plain or gzip compressed. Each record is processed and written as soon as it has been read, so memory use does not grow with the size of the input.
+     * With more than one thread, records are processed side by side but still written in input order, giving the same files as a single thread.
+     * @param input The FASTA file holding the protein sequences
+     * @param dir The job directory, wherein files are written. Its name is used as the job ID.
+     * @throws IOException If the input cannot be read or the output cannot be written
+     */
+    public void run(File input, File dir) throws IOException
+    {
+        /**
+         * Beginning timestamp to track processing time
+         */
+        final long timeStart = System.currentTimeMillis();
+        final long nanoStart = System.nanoTime();
+        recordsWritten = 0;
+        writtenEnd = 0;
+
+        if (repeatLength < 1 || repeatLength > KmerIndex.MAX_K)
+        {
+            throw new IllegalArgumentException("Repeat length must be from 1 to " + KmerIndex.MAX_K + ", not " + repeatLength);
+        }
+
+        if (synthesisCheck && (gcWindow < 1 || maxHomopolymer < 1 || !(gcMin <= gcMax)))
+        {
+            throw new IllegalArgumentException("Bad synthesis limits: window " + gcWindow + ", GC " + gcMin + " to " + gcMax + ", run " + maxHomopolymer);
+        }
+
+        dir.mkdirs();
+
+        // The output files stay open for the whole job, and are flushed and closed on the way out even if the job fails
+        /**
+         * The events stream, written with structured reports at event verbosity
+         */
+        String eventsName = null;
+
+        if (reportFormat != ReportFormat.TEXT && verbosity == ReportVerbosity.EVENT)
+        {
+            eventsName = "protein2bioBrick_events." + reportFormat.name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * The output files, in the order their lengths are journalled
+         */
+        File[] outFiles = {new File(dir, OutputSink.fileName(OutputSink.RESULT_NAME, compressOutput)),
+                new File(dir, OutputSink.fileName(OutputSink.REPORT_NAME, compressOutput)),
+                new File(dir, OutputSink.fileName(OutputSink.BACKTRANS_NAME, compressOutput)),
+                eventsName == null ? null : new File(dir, OutputSink.fileName(eventsName, compressOutput))};
+
+        /**
+         * The settings that shape the output, journalled so a job is only resumed with the settings it was started with
+         */
+        String settings = ResultCache.key("job-v1", standard.name, String.join(",", standard.sites()), addEnds,
+                hostCodons.fingerprint(), repeatLength, verifyEdits, codonStrategy, segmentLength,
+                synthesisCheck ? gcWindow + "/" + gcMin + "/" + gcMax + "/" + maxHomopolymer : "",
+                reportFormat, verbosity, compressOutput, collectStats);
+
+        /**
+         * The last checkpoint of an earlier run being resumed, or null for a fresh start
+         */
+        Checkpoint.State resumed = resume ? Checkpoint.read(dir) : null;
+
+        if (resumed != null)
+        {
+            if (resumed.inputLength != input.length() || resumed.inputFingerprint != Checkpoint.fingerprint(input))
+            {
+                throw new IOException("The input has changed since job " + dir.getName() + " was checkpointed");
+            }
+
+            if (!settings.equals(resumed.settings))
+            {
+                throw new IOException("Job " + dir.getName() + " was started with other settings, and cannot be resumed with these");
+            }
+        }
+
+        if (resumed == null)
+        {
+            Checkpoint.discard(dir);
+        }
+        else if (resumed.done)
+        {
+            Logger.getLogger(BioBrickEngine.class.getName()).log(Level.INFO, "Job {0} has already finished", dir.getName());
+            seqCount = resumed.records;
+            return;
+        }
+        else
+        {
+            // Anything written after the checkpoint is dropped, and the job carries on with the seed it started with
+            Checkpoint.restore(resumed, outFiles);
+            seed = resumed.seed;
+        }
+
+        checkpointEvery = checkpointInterval > 0 ? checkpointInterval : (resume ? DEFAULT_CHECKPOINT_INTERVAL : 0);
+
+        if (threads > 1)
+        {
+            pool = new ForkJoinPool(threads);
+        }
+
+        chooseScanner();
+
+        if (cacheSize > 0 || diskCache)
+        {
+            cache = new ResultCache(cacheSize, diskCache ? new File(dir, "cache") : null);
+        }
+
+        try (OutputSink sink = new OutputSink(dir, flushPolicy, flushInterval, eventsName, compressOutput);
+             FastaReader reader = FastaReader.open(input);
+             JobStats stats = collectStats ? new JobStats(dir, resumed != null && resumed.started ? resumed.records : 0) : null;
+             Checkpoint journal = checkpointEvery <= 0 ? null
+                     : resumed == null ? new Checkpoint(dir, outFiles, seed, input.length(), Checkpoint.fingerprint(input), settings)
+                     : new Checkpoint(dir, outFiles))
+        {
+            jobStats = stats;
+            checkpoint = journal;
+            this.reader = reader;
+            inputLength = input.length();
+
+            if (resumed != null && resumed.started)
+            {
+                reader.skipTo(resumed.inputOffset);
+                seqCount = resumed.records;
+                recordsWritten = resumed.records;
+                writtenEnd = resumed.inputOffset;
+            }
+            else if (reportFormat == ReportFormat.JSONL)
+            {
+                sink.report("{\"type\":\"job\",\"job\":" + RecordOutput.json(dir.getName()) + ",\"seed\":" + seed + "}");
+            }
+            else if (reportFormat == ReportFormat.TSV)
+            {
+                sink.report("# Job ID# " + dir.getName());
+                sink.report("# Random seed: " + seed);
+                if (verbosity != ReportVerbosity.SUMMARY)
+                {
+                    sink.report(RecordOutput.tsvHeader());
+                }
+                if (eventsName != null)
+                {
+                    sink.events(RecordOutput.tsvEventsHeader());
+                }
+            }
+            else
+            {
+                sink.report("Job ID# " + dir.getName());
+                sink.report("Random seed: " + seed + System.lineSeparator());
+            }
+
+            /**
+             * Records submitted to the workers, oldest first, waiting to be written in input order
+             */
+            ArrayDeque<Future<RecordOutput>> inFlight = new ArrayDeque<>();
+
+            // Begin Block of Code for Processing File
+            while (!cancelled && nextRecord(reader))
+            {
+                submit(reader.sequence(), reader.header(), reader.recordEnd(), sink, inFlight);
+            }
+
+            drain(sink, inFlight);
+
+            // A cancelled job is checkpointed before its summary, so a resumed run drops the summary and carries on
+            if (journal != null)
+            {
+                sink.sync();
+                if (stats != null)
+                {
+                    stats.sync();
+                }
+                journal.commit(recordsWritten, writtenEnd);
+            }
+
+            /**
+             * Timestamp to determine the end of the program run and calculate processing time
+             */
+            final long timeEnd = System.currentTimeMillis();
+
+            String repF = "Source Filename: " + input.getName() + System.lineSeparator();
+            repF += seqCount + " sequences retrieved" + System.lineSeparator();
+            if (resumed != null && resumed.started)
+            {
+                repF += "Resumed after " + resumed.records + " sequences" + System.lineSeparator();
+            }
+            if (cancelled)
+            {
+                repF += "Job cancelled after " + recordsWritten + " sequences written" + System.lineSeparator();
+            }
+            repF += "Assembly Standard chosen: " + assmStandard + System.lineSeparator();
+            repF += "Codon table: " + hostCodons.name() + System.lineSeparator();
+            if (siteFinder != reScanner)
+            {
+                repF += "Site scanner: " + siteFinder + System.lineSeparator();
+            }
+            if (!enzymes.listed().isEmpty())
+            {
+                repF += "Extra enzymes: " + String.join(", ", enzymes.listed()) + System.lineSeparator();
+            }
+            if (addEnds)
+            {
+                repF += "Prefix and Suffix added" + System.lineSeparator();
+            }
+            if (cache != null)
+            {
+                repF += "Result cache: " + cache.hits() + " hits (" + cache.diskHits() + " from disk), " + cache.misses() + " misses" + System.lineSeparator();
+            }
+            if (stats != null)
+            {
+                repF += stats.summary() + System.lineSeparator();
+            }
+            repF += Long.toString(timeEnd - timeStart) + " milliseconds of runtime";
+
+            if (reportFormat == ReportFormat.JSONL)
+            {
+                String summary = "{\"type\":\"summary\",\"source\":" + RecordOutput.json(input.getName())
+                        + ",\"sequences\":" + seqCount
+                        + ",\"standard\":" + RecordOutput.json(assmStandard)
+                        + ",\"codon_table\":" + RecordOutput.json(hostCodons.name())
+                        + ",\"ends\":" + addEnds;
+                if (!enzymes.listed().isEmpty())
+                {
+                    List<String> names = new ArrayList<>();
+
+                    for (String name : enzymes.listed())
+                    {
+                        names.add(RecordOutput.json(name));
+                    }
+
+                    summary += ",\"extra_enzymes\":[" + String.join(",", names) + "]";
+                }
+                if (resumed != null && resumed.started)
+                {
+                    summary += ",\"resumed\":" + resumed.records;
+                }
+                if (cancelled)
+                {
+                    summary += ",\"cancelled\":true,\"written\":" + recordsWritten;
+                }
+                if (cache != null)
+                {
+                    summary += ",\"cache_hits\":" + cache.hits() + ",\"cache_disk_hits\":" + cache.diskHits() + ",\"cache_misses\":" + cache.misses();
+                }
+                summary += ",\"runtime_ms\":" + (timeEnd - timeStart) + "}";
+
+                sink.report(summary);
+            }
+            else if (reportFormat == ReportFormat.TSV)
+            {
+                sink.report("# " + repF.replace(System.lineSeparator(), System.lineSeparator() + "# "));
+            }
+            else
+            {
+                sink.report(repF);
+            }
+
+            if (stats != null)
+            {
+                stats.finish(System.nanoTime() - nanoStart);
+            }
+
+            if (journal != null && !cancelled)
+            {
+                sink.sync();
+                journal.done(recordsWritten, writtenEnd);
+            }
+        }
+        finally
+        {
+            checkpoint = null;
+            reader = null;
+            if (pool != null)
+            {
+                pool.shutdownNow();
+                pool = null;
+            }
+            cache = null;
+            jobStats = null;
+        }
+    }
+
+    /**
+     * Hands a record to the workers, or processes it straight away when running on a single thread.
+     * Once the reorder window is full, the oldest record is waited for and written before the new one is taken on.
+     * @param seqBody The protein sequence
+     * @param seqHeader The sequence header
+     * @param inputEnd The offset in the input just after the record
+     * @param sink The output files of the job
+     * @param inFlight Records submitted but not yet written, oldest first
+     * @throws IOException If the output cannot be written
+     */
+    private void submit(final String seqBody, final String seqHeader, final long inputEnd, OutputSink sink, ArrayDeque<Future<RecordOutput>> inFlight) throws IOException
+    {
+        seqCount++;
+
+        final int seqNumber = seqCount;
+
+        if (pool == null)
+        {
+            RecordOutput record = processSeq(seqBody, seqHeader, seqNumber);
+            record.inputEnd = inputEnd;
+            write(sink, record);
+            return;
+        }
+
+        if (inFlight.size() >= Math.max(1, reorderWindow))
+        {
+            RecordOutput oldest = await(inFlight.poll());
+
+            // Skipped by a cancelled job; nothing after it is written either
+            if (oldest == null)
+            {
+                inFlight.clear();
+                return;
+            }
+
+            write(sink, oldest);
+        }
+
+        inFlight.add(pool.submit(new Callable<RecordOutput>()
+        {
+            @Override
+            public RecordOutput call()
+            {
+                // A record not yet started when the job is cancelled is skipped
+                if (cancelled)
+                {
+                    return null;
+                }
+                RecordOutput record = processSeq(seqBody, seqHeader, seqNumber);
+                record.inputEnd = inputEnd;
+                return record;
+            }
+        }));
+    }
+
+    /**
+     * Writes the records still with the workers. Once the job is cancelled, records being worked on are finished but
+     * those not yet started are skipped, and writing stops at the first skipped record, so the output holds an unbroken
+     * run from the start of the input.
+     * @param sink The output files of the job
+     * @param inFlight Records submitted but not yet written, oldest first
+     * @throws IOException If the output cannot be written
+     */
+    private void drain(OutputSink sink, ArrayDeque<Future<RecordOutput>> inFlight) throws IOException
+    {
+        while (!inFlight.isEmpty())
+        {
+            RecordOutput record = await(inFlight.poll());
+
+            if (record == null)
+            {
+                inFlight.clear();
+                return;
+            }
+
+            write(sink, record);
+        }
+    }
+
+    /**
+     * Shares a result cache with an engine used outside {@link #run(File, File)}, as by the server, whose records are
+     * handed to {@link #processSeq(String, String, int)} directly
+     * @param cache The cache, or null for none
+     */
+    void useCache(ResultCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Picks the site scanner the job uses, as set by vectorScan. Called by {@link #run(File, File)}, and by the server for
+     * the engines it sets up.
+     */
+    void chooseScanner()
+    {
+        siteFinder = vectorScan ? SiteScanners.accelerated(reScanner) : reScanner;
+    }
+
+    /**
+     * Asks a running job to stop. Records already finished are written and the output files are closed as usual, so
+     * the job directory holds the results for the start of the input. May be called from any thread.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the job was asked to stop
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Reads the next record, timing the read when statistics are collected
+     * @param reader The input of the job
+     * @return False at the end of the input
+     * @throws IOException If the input cannot be read
+     */
+    private boolean nextRecord(FastaReader reader) throws IOException
+    {
+        if (jobStats == null)
+        {
+            return reader.next();
+        }
+
+        long start = System.nanoTime();
+        boolean res = reader.next();
+        jobStats.parseNanos += System.nanoTime() - start;
+        return res;
+    }
+
+    /**
+     * Writes a finished record, timing the write and adding the record to the statistics when they are collected, and
+     * tells the progress listener
+     * @param sink The output files of the job
+     * @param record The output of the record
+     * @throws IOException If the output cannot be written
+     */
+    private void write(OutputSink sink, RecordOutput record) throws IOException
+    {
+        recordsWritten++;
+        writtenEnd = record.inputEnd;
+
+        if (jobStats == null)
+        {
+            sink.write(record);
+        }
+        else
+        {
+            long start = System.nanoTime();
+            sink.write(record);
+            jobStats.writeNanos += System.nanoTime() - start;
+
+            if (record.stats != null)
+            {
+                jobStats.add(record.seqNumber, record.stats);
+            }
+        }
+
+        if (progressListener != null)
+        {
+            progressListener.progress(recordsWritten, reader.inputPosition(), inputLength);
+        }
+
+        // The files are forced to disk before the checkpoint is journalled, so the journal never runs ahead of them
+        if (checkpoint != null && recordsWritten % checkpointEvery == 0)
+        {
+            sink.sync();
+            if (jobStats != null)
+            {
+                jobStats.sync();
+            }
+            checkpoint.commit(recordsWritten, writtenEnd);
+        }
+    }
+
+    /**
+     * Waits for a record to be finished by the workers
+     * @param future The pending record
+     * @return The output of the record
+     * @throws IOException If the job is interrupted while waiting
+     */
+    private static RecordOutput await(Future<RecordOutput> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a record");
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Reverse Translation function. Takes an amino acid and a codon usage preference number.
+     * @param aminoAcid The amino acid to be reverse translated
+     * @param codonUsage A number representing the fraction, of 0 to 1, from optimal to worst codon according to E coli codon usage
+     * @return The nucleotide codon that encodes the amino acid
+     */
+    static String revTrnsl(String aminoAcid, double codonUsage)
+    {
+        if (aminoAcid.length() != 1)
+        {
+            return "nnn";
+        }
+
+        return revTrnsl(aminoAcid.charAt(0), codonUsage);
+    }
+
+    /**
+     * Reverse Translation function for a single residue of a protein sequence, without making a String of it.
+     * @param aminoAcid The amino acid to be reverse translated
+     * @param codonUsage A number representing the fraction, of 0 to 1, from optimal to worst codon according to E coli codon usage
+     * @return The nucleotide codon that encodes the amino acid
+     */
+    static String revTrnsl(char aminoAcid, double codonUsage)
+    {
+        return CodonTable.name(revTrnslCodon(aminoAcid, codonUsage));
+    }
+
+    /**
+     * Reverse Translation function, giving the packed codon number from the codon table.
+     * @param aminoAcid The amino acid to be reverse translated
+     * @param codonUsage A number representing the fraction, of 0 to 1, from optimal to worst codon according to E coli codon usage
+     * @return The codon number, or {@link CodonTable#NO_CODON} for an unknown amino acid
+     */
+    static int revTrnslCodon(char aminoAcid, double codonUsage)
+    {
+        return revTrnslCodon(codonTable, aminoAcid, codonUsage);
+    }
+
+    /**
+     * Reverse Translation function for any codon table. The codon usage fraction is taken along the usage frequencies of the
+     * table, so a codon used for 70% of an amino acid covers the fractions from 0 to 0.7.
+     * @param table The codon table of the host
+     * @param aminoAcid The amino acid to be reverse translated
+     * @param codonUsage A number representing the fraction, of 0 to 1, from most to least used codon
+     * @return The codon number, or {@link CodonTable#NO_CODON} for an unknown amino acid
+     */
+    static int revTrnslCodon(CodonTable table, char aminoAcid, double codonUsage)
+    {
+        int amino = table.aminoIndex(aminoAcid);
+
+        if (amino < 0)
+        {
+            return CodonTable.NO_CODON;
+        }
+
+        return table.codonAt(amino, codonUsage);
+    }
+
+    /**
+     * A function to replace a codon with another synomous codon, in order to remove unwanted motifs
+     * @param oldCodon The old nucleotide codon, to be replaced
+     * @param attempts The number of random draws allowed before giving up
+     * @param random The random source of the record being processed
+     * @return The new codon, which is the old codon if no other choice was found
+     */
+    static String newCodonRandom (String oldCodon, int attempts, SplittableRandom random)
+    {
+        int codon = CodonTable.index(oldCodon);
+
+        if (codon == CodonTable.NO_CODON)
+        {
+            return oldCodon;
+        }
+
+        return CodonTable.name(newCodonRandom(codon, attempts, random));
+    }
+
+    /**
+     * A function to replace a codon with another synomous codon, working on packed codon numbers
+     * @param oldCodon The old codon number, to be replaced
+     * @param attempts The number of random draws allowed before giving up
+     * @param random The random source of the record being processed
+     * @return The new codon number, which is the old codon if no other choice was found. The caller compares it with the old codon to see if the choice was good.
+     */
+    static int newCodonRandom (int oldCodon, int attempts, SplittableRandom random)
+    {
+        return newCodonRandom(codonTable, oldCodon, attempts, random);
+    }
+
+    /**
+     * A function to replace a codon with another synomous codon from any codon table. Codons are drawn in proportion to their
+     * usage in the host.
+     * @param table The codon table of the host
+     * @param oldCodon The old codon number, to be replaced
+     * @param attempts The number of random draws allowed before giving up
+     * @param random The random source of the record being processed
+     * @return The new codon number, which is the old codon if no other choice was found
+     */
+    static int newCodonRandom (CodonTable table, int oldCodon, int attempts, SplittableRandom random)
+    {
+        return newCodonRandom(table, oldCodon, attempts, random, null);
+    }
+
+    /**
+     * A function to replace a codon with another synomous codon from any codon table, counting the draws made
+     * @param table The codon table of the host
+     * @param oldCodon The old codon number, to be replaced
+     * @param attempts The number of random draws allowed before giving up
+     * @param random The random source of the record being processed
+     * @param stats Counts the draws, and the fail safe running out, or null
+     * @return The new codon number, which is the old codon if no other choice was found
+     */
+    static int newCodonRandom (CodonTable table, int oldCodon, int attempts, SplittableRandom random, RecordStats stats)
+    {
+        int amino = table.aminoOf(oldCodon);
+
+        int newCodon = oldCodon;
+
+        // Amino acids with a single codon, such as M and W, cannot be recoded
+        if (amino >= 0 && table.codonCount(amino) > 1)
+        {
+            int failSafe = 0;
+
+            while (newCodon == oldCodon && failSafe < attempts)
+            {
+                newCodon = table.sample(amino, random);
+                failSafe++;
+            }
+
+            if (stats != null)
+            {
+                stats.draws += failSafe;
+
+                if (newCodon == oldCodon)
+                {
+                    stats.failSafes++;
+                }
+            }
+        }
+
+        return newCodon;
+    }
+
+    /**
+     * Derives the seed of one record from the job seed and the protein sequence, rather than from the order in which records
+     * happen to be processed, so a protein gets the same DNA whichever thread processes it and wherever it is in the input.
+     * @param seed The job seed
+     * @param protein The protein sequence
+     * @return The seed for the record
+     */
+    static long recordSeed(long seed, CharSequence protein)
+    {
+        // FNV-1a over the protein, then mixed with the job seed
+        long h = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < protein.length(); i++)
+        {
+            h ^= protein.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        return seed ^ (h * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Translation function. Will take a nucleotide sequence and attempt to translate it into protein
+     * @param nuc The nucleotide sequence. A final partial codon is padded with a.
+     * @return The protein / amino acid sequence
+     */
+    static String trnsL (String nuc){
+        return codonTable.translate(nuc);
+    }
+
+    /**
+     * Finds the positions within a motif that correspond to the codons in the larger open reading frame
+     * @param motif The motif in question
+     * @param pos The position of the motif in the larger sequence
+     * @return The number, relative to the start of the motif, for codons in the open reading frame
+     */
+    static int[] findFrame (String motif, int pos)
+    {
+        return findFrame(motif.length(), pos);
+    }
+
+    /**
+     * Finds the positions of the codons in the open reading frame that start within a motif
+     * @param motifLength The length of the motif in question
+     * @param pos The position of the motif in the larger sequence
+     * @return The position of each codon, one for every whole three bases of the motif
+     */
+    static int[] findFrame (int motifLength, int pos)
+    {
+        int resSize = motifLength / 3;
+
+        int[] res = new int[resSize];
+
+        // Move up to the first codon boundary at or after the motif start
+        int a = pos + (3 - pos % 3) % 3;
+
+        for (int i = 0; i < resSize; i++)
+        {
+            res[i] = a;
+            a += 3;
+        }
+
+        return res;
+    }
+
+    /**
+     * Counts the number of best, intermediate, or worst codons used, for giving an idea of the relative codon optimization.
+     * @param seqBody The nucleotide sequence
+     * @return The number of codons found at each rank
+     */
+    static int[] assessCodons (String seqBody)
+    {
+        return assessCodons(new NucleotideBuffer(seqBody));
+    }
+
+    /**
+     * Counts the number of best, intermediate, or worst codons used, reading the codons in place.
+     * @param nuc The nucleotide sequence
+     * @return The number of codons found at each rank
+     */
+    static int[] assessCodons (NucleotideBuffer nuc)
+    {
+        int[] res = {0, 0, 0, 0, 0, 0};
+
+        codonTable.countRanks(nuc, res);
+
+        return res;
+    }
+
+    /**
+     * A method to hold values for a codon table, and compile them for lookup. Eventually will take input to change table
+     * @return The compiled codon table
+     */
+    static CodonTable createCodonTable(){
+
+       String[] metCodons = {"atg"};
+       codonArr[0] = metCodons;
+
+       String[] glyCodons = {"ggc", "ggt", "ggg", "gga"};
+       codonArr[1] = glyCodons;
+
+       String[] alaCodons = {"gcg", "gcc", "gca", "gct"};
+       codonArr[2] = alaCodons;
+
+       String[] valCodons = {"gtg", "gtt", "gtc", "gta"};
+       codonArr[3] = valCodons;
+
+       String[] ileCodons = {"att", "atc", "ata"};
+       codonArr[4] = ileCodons;
+
+       String[] leuCodons = {"ctg", "tta", "ttg", "ctt", "ctc", "cta"};
+       codonArr[5] = leuCodons;
+
+       String[] serCodons = {"agc", "tcg", "agt", "tcc", "tct", "tca"};
+       codonArr[6] = serCodons;
+
+       String[] thrCodons = {"acc", "acg", "act", "aca"};
+       codonArr[7] = thrCodons;
+
+       String[] asnCodons = {"aac", "aat"};
+       codonArr[8] = asnCodons;
+
+       String[] glnCodons = {"cag", "caa"};
+       codonArr[9] = glnCodons;
+
+       String[] aspCodons = {"gat", "gac"};
+       codonArr[10] = aspCodons;
+
+       String[] gluCodons = {"gaa", "gag"};
+       codonArr[11] = gluCodons;
+
+       String[] hisCodons = {"cat", "cac"};
+       codonArr[12] = hisCodons;
+
+       String[] lysCodons = {"aaa", "aag"};
+       codonArr[13] = lysCodons;
+
+       String[] argCodons = {"cgc", "cgt", "cgg", "cga", "aga", "agg"};
+       codonArr[14] = argCodons;
+
+       String[] cysCodons = {"tgc", "tgt"};
+       codonArr[15] = cysCodons;
+
+       String[] pheCodons = {"ttt", "ttc"};
+       codonArr[16] = pheCodons;
+
+       String[] trpCodons = {"tgg"};
+       codonArr[17] = trpCodons;
+
+       String[] tyrCodons = {"tat", "tac"};
+       codonArr[18] = tyrCodons;
+
+       String[] proCodons = {"ccg", "cca", "cct", "ccc"};
+       codonArr[19] = proCodons;
+
+       String[] stopCodons = {"taa", "tga", "tag"};
+       codonArr[20] = stopCodons;
+
+       // Use Alanine in place of unknown amino acid.
+       String[] unkCodons = {"gcg", "gcc", "gca", "gct"};
+       codonArr[21] = unkCodons;
+
+       return new CodonTable(aminoArr, codonArr);
+
+    }
+
+    /**
+     * A function that encapsulates the main processing routine. Stored as separate function since it is called for every record.
+     * @param seqBody The protein sequence
+     * @param seqHeader The sequence header
+     * @param seqNumber The number of the record within the job
+     * @return The resulting DNA sequence, runtime information and back-translation for the record
+     */
+    RecordOutput processSeq(String seqBody, String seqHeader, int seqNumber)
+    {
+        /**
+         * Collects the output for this record until it is written in order
+         */
+        RecordOutput out = new RecordOutput(seqNumber, reportFormat, verbosity);
+
+        long timeStart = 0;
+
+        if (collectStats)
+        {
+            out.stats = new RecordStats();
+            out.stats.length = seqBody.length();
+            timeStart = System.nanoTime();
+        }
+
+        out.result(seqHeader);
+
+        out.begin(seqHeader, seqBody.length());
+
+        /**
+         * The key of this record in the result cache: the protein and every setting that decides its DNA
+         */
+        String key = cache == null ? null : ResultCache.key("events-v1", seqBody, standard.name, hostCodons.fingerprint(), seed, repeatLength, verifyEdits, codonStrategy,
+                seqBody.length() > segmentLength ? segmentLength : 0,
+                synthesisCheck ? gcWindow + "/" + gcMin + "/" + gcMax + "/" + maxHomopolymer : "",
+                enzymes.listed().isEmpty() ? "" : String.join(",", standard.sites()));
+
+        ResultCache.Entry cached = key == null ? null : cache.get(key);
+
+        /**
+         * The finished nucleotide sequence
+         */
+        NucleotideBuffer nuc;
+
+        /**
+         * The finished nucleotide sequence, made into a String once for writing
+         */
+        String dna;
+
+        // Whether a record is found in the cache depends on which records other threads have finished, so it is left out
+        // of the record's own rows and only counted in the summary of the job
+        if (cached != null)
+        {
+            out.replay(cached.events);
+
+            if (out.stats != null)
+            {
+                out.stats.cached = true;
+            }
+            dna = cached.dna;
+            nuc = new NucleotideBuffer(dna);
+        }
+        else
+        {
+            if (key != null)
+            {
+                out.keepLog();
+            }
+
+            nuc = makeDna(seqBody, out);
+            dna = nuc.toString();
+
+            if (key != null)
+            {
+                cache.put(key, new ResultCache.Entry(dna, out.log()));
+            }
+        }
+
+        //Write results
+        if(addEnds)
+        {
+            out.dna = prefix + dna + suffix;
+        }
+        else
+        {
+            out.dna = dna;
+        }
+        out.result(out.dna + System.lineSeparator());
+
+        //Back translation
+
+        SequenceScore score = newScore(nuc);
+
+        if (score != null)
+        {
+            if (score.gcWindows() > 0)
+            {
+                out.event(ReportEvent.GC_WINDOWS, null, score.gcWindows(), null);
+            }
+            if (score.longRuns() > 0)
+            {
+                out.event(ReportEvent.LONG_RUNS, null, score.longRuns(), null);
+            }
+            out.cai = score.cai();
+            out.gc = score.gcContent();
+        }
+
+        int[] codonRanks = new int[6];
+        hostCodons.countRanks(nuc, codonRanks);
+
+        out.finish(codonRanks);
+
+        out.backtrans(seqHeader + System.lineSeparator());
+        out.translation = hostCodons.translate(dna);
+        out.backtrans(out.translation + System.lineSeparator());
+
+        if (out.stats != null)
+        {
+            out.stats.totalNanos = System.nanoTime() - timeStart;
+        }
+
+        return out;
+    }
+
+    /**
+     * Reverse translates a protein and removes repeats and restriction sites from the result
+     * @param seqBody The protein sequence
+     * @param out Receives the report lines for the record
+     * @return The nucleotide sequence
+     */
+    private NucleotideBuffer makeDna(String seqBody, RecordOutput out)
+    {
+        /**
+         * Random source for this record alone, drawn from the job seed and the protein sequence
+         */
+        SplittableRandom random = new SplittableRandom(recordSeed(seed, seqBody));
+
+        /**
+         * The nucleotide sequence, edited in place as codons are replaced
+         */
+        NucleotideBuffer nuc;
+
+        if (segmentLength > 0 && seqBody.length() > segmentLength)
+        {
+            nuc = makeSegmented(seqBody, random, out);
+        }
+        else
+        {
+            nuc = new NucleotideBuffer(seqBody.length() * 3);
+            repair(seqBody, nuc, random, out);
+        }
+
+        boolean[] present = siteFinder.present(nuc);
+
+        for (int i = 0; i < reScanner.motifCount(); i++)
+        {
+            if (!present[i])
+            {
+                out.event(ReportEvent.SITE_ABSENT, reScanner.motif(i), -1, null);
+            }
+        }
+
+        return nuc;
+    }
+
+    /**
+     * Reverse translates a protein, then removes repeats and RE sites and verifies the changes
+     * @param protein The protein sequence
+     * @param nuc Receives the nucleotide sequence; three bases per amino acid
+     * @param random The random source
+     * @param out Receives the events, and the stage times when they are collected
+     */
+    private void repair(CharSequence protein, NucleotideBuffer nuc, SplittableRandom random, RecordOutput out)
+    {
+        /**
+         * Timings for the record, or null when they are not collected
+         */
+        RecordStats stats = out.stats;
+        long mark = stats == null ? 0 : System.nanoTime();
+
+        // Reverse translate. A protein too long for the assigner's memory is given the top codons and repaired instead.
+        boolean assign = codonStrategy == CodonStrategy.AVOID && CodonAssigner.fits(protein.length(), standard);
+
+        if (codonStrategy == CodonStrategy.AVOID && !assign)
+        {
+            String message = "Too long to assign codons around the sites; top codons used and repaired instead";
+            Logger.getLogger(BioBrickEngine.class.getName()).log(Level.WARNING, "Record {0}: {1}", new Object[] {out.seqNumber, message});
+            out.note(message);
+        }
+
+        if (assign)
+        {
+            int unavoidable = CodonAssigner.assign(protein, hostCodons, standard, nuc);
+
+            if (unavoidable > 0)
+            {
+                out.event(ReportEvent.UNAVOIDABLE, null, unavoidable, null);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < protein.length(); i++)
+            {
+                nuc.setCodon(i * 3, revTrnslCodon(hostCodons, protein.charAt(i), 0.0));
+            }
+        }
+
+        /**
+         * The stretches changed by the checks, to be verified afterwards, or null when verification is off
+         */
+        DirtyRegions edits = verifyEdits ? new DirtyRegions(nuc.length()) : null;
+
+        /**
+         * Synthesis scores, kept up to date to screen codon changes, or null when they are not checked
+         */
+        SequenceScore score = newScore(nuc);
+
+        if (stats != null)
+        {
+            long now = System.nanoTime();
+            stats.translateNanos += now - mark;
+            mark = now;
+        }
+
+        removeRepeats(nuc, random, out, edits, score);
+
+        if (stats != null)
+        {
+            long now = System.nanoTime();
+            stats.repeatNanos += now - mark;
+            mark = now;
+        }
+
+        removeSites(nuc, random, out, edits, score);
+
+        if (stats != null)
+        {
+            long now = System.nanoTime();
+            stats.siteNanos += now - mark;
+            mark = now;
+        }
+
+        if (edits != null)
+        {
+            verify(nuc, random, out, edits, score);
+        }
+
+        if (stats != null)
+        {
+            stats.verifyNanos += System.nanoTime() - mark;
+        }
+    }
+
+    /**
+     * @param nuc A nucleotide sequence
+     * @return The synthesis scores of the sequence, or null when the job does not check them
+     */
+    private SequenceScore newScore(NucleotideBuffer nuc)
+    {
+        return synthesisCheck ? new SequenceScore(nuc, hostCodons, gcWindow, gcMin, gcMax, maxHomopolymer) : null;
+    }
+
+    /**
+     * Makes the DNA for a long protein in segments. The protein is cut into segments of about {@link #segmentLength} amino
+     * acids, and each is repaired on its own, on the workers when the job has more than one thread, together with a margin
+     * of the segments either side so that sites and repeats near its ends are seen. Only the segment itself is kept from
+     * each; the joins are then reconciled, fixing any site or repeat that spans one.
+     *
+     * Repeats are looked for within each segment and across the joins, but a motif in one segment that occurs again in
+     * another is not. Each segment draws from its own random source, split from the record's in order, so the DNA does not
+     * depend on the number of threads.
+     * @param protein The protein sequence
+     * @param random The random source of the record
+     * @param out Receives the events of the record
+     * @return The nucleotide sequence
+     */
+    private NucleotideBuffer makeSegmented(final String protein, SplittableRandom random, RecordOutput out)
+    {
+        int length = protein.length();
+        int count = (length + segmentLength - 1) / segmentLength;
+
+        /**
+         * The margin repaired with each segment, in codons: enough for a site or repeat to reach across the join
+         */
+        int margin = (reScanner.maxLength() + repeatLength + 2) / 3;
+
+        /**
+         * The first codon of each segment, and the length of the protein
+         */
+        int[] bounds = new int[count + 1];
+
+        for (int i = 0; i <= count; i++)
+        {
+            bounds[i] = (int) ((long) length * i / count);
+        }
+
+        final int[] from = new int[count];
+        final NucleotideBuffer[] parts = new NucleotideBuffer[count];
+        final RecordOutput[] partOuts = new RecordOutput[count];
+        List<RecursiveAction> tasks = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            final int part = i;
+            final int to = Math.min(length, bounds[i + 1] + margin);
+            final SplittableRandom partRandom = random.split();
+
+            from[i] = Math.max(0, bounds[i] - margin);
+
+            // Events are only logged, to be replayed into the record for the positions each segment keeps
+            partOuts[i] = new RecordOutput(out.seqNumber, ReportFormat.JSONL, ReportVerbosity.SUMMARY);
+            partOuts[i].keepLog();
+
+            if (out.stats != null)
+            {
+                partOuts[i].stats = new RecordStats();
+            }
+
+            tasks.add(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    parts[part] = new NucleotideBuffer((to - from[part]) * 3);
+                    repair(protein.substring(from[part], to), parts[part], partRandom, partOuts[part]);
+                }
+            });
+        }
+
+        if (threads > 1)
+        {
+            ForkJoinTask.invokeAll(tasks);
+        }
+        else
+        {
+            for (RecursiveAction task : tasks)
+            {
+                task.invoke();
+            }
+        }
+
+        NucleotideBuffer nuc = new NucleotideBuffer(length * 3);
+
+        /**
+         * The positions where one segment meets the next
+         */
+        int[] joins = new int[count - 1];
+
+        int unavoidable = 0;
+        int stopped = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            unavoidable += partOuts[i].value(ReportEvent.UNAVOIDABLE);
+            stopped += partOuts[i].value(ReportEvent.VERIFY_STOPPED);
+
+            if (out.stats != null)
+            {
+                out.stats.add(partOuts[i].stats);
+            }
+        }
+
+        if (unavoidable > 0)
+        {
+            out.event(ReportEvent.UNAVOIDABLE, null, unavoidable, null);
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            int start = bounds[i] * 3;
+            int end = bounds[i + 1] * 3;
+            int offset = from[i] * 3;
+
+            nuc.put(start, parts[i], start - offset, end - offset);
+            out.replay(partOuts[i].log(), offset, start, end);
+
+            if (i > 0)
+            {
+                joins[i - 1] = start;
+            }
+        }
+
+        if (stopped > 0)
+        {
+            out.event(ReportEvent.VERIFY_STOPPED, null, stopped, null);
+        }
+
+        long mark = out.stats == null ? 0 : System.nanoTime();
+
+        reconcile(nuc, random, out, joins);
+
+        if (out.stats != null)
+        {
+            out.stats.verifyNanos += System.nanoTime() - mark;
+        }
+
+        return nuc;
+    }
+
+    /**
+     * Fixes the sites and repeats spanning the joins of a sequence repaired in segments. Every repeat length motif that
+     * spans a join and occurs elsewhere is recoded once, unless that would make a site; sites that could span a join, or
+     * be made by a fix, are checked until none is left. Unlike {@link #verify}, a repeat fix does not lead on to the motifs
+     * around it, which in a long sequence could run on through the whole of it.
+     * @param nuc The nucleotide sequence, edited in place
+     * @param random The random source of the record
+     * @param out Receives a report line for each site and repetition found
+     * @param joins The positions where one segment meets the next
+     */
+    private void reconcile(NucleotideBuffer nuc, SplittableRandom random, RecordOutput out, int[] joins)
+    {
+        int reach = reScanner.maxLength() - 1;
+
+        /**
+         * Index of every repeat length k-mer, kept up to date as codons are replaced
+         */
+        KmerIndex repeats = new KmerIndex(nuc, repeatLength);
+
+        /**
+         * Positions where a site may end that are still to be checked
+         */
+        DirtyRegions siteEnds = new DirtyRegions(nuc.length());
+
+        /**
+         * The stretches changed by a single fix
+         */
+        DirtyRegions changes = new DirtyRegions(nuc.length());
+
+        Map<Long, Integer> attempts = new HashMap<>();
+
+        SequenceScore score = newScore(nuc);
+
+        for (int join : joins)
+        {
+            siteEnds.mark(join, join + reach);
+        }
+
+        drainSites(nuc, random, out, siteEnds, attempts, repeats, null, score);
+
+        for (int join : joins)
+        {
+            for (int a = Math.max(0, join - repeatLength + 1); a < join && a + repeatLength <= nuc.length(); a++)
+            {
+                if (repeats.other(a) < 0)
+                {
+                    continue;
+                }
+
+                /**
+                 * The pattern to be used to check for reptitions
+                 */
+                String seqPat = nuc.substring(a, a + repeatLength);
+
+                changes.clear();
+
+                if (recodeRepeat(nuc, a, random, repeats, changes, out.stats, score))
+                {
+                    out.event(ReportEvent.REPEAT_FIXED, seqPat, a, nuc.substring(a, a + repeatLength));
+                }
+                else
+                {
+                    out.event(ReportEvent.REPEAT_KEPT, seqPat, a, null);
+                }
+
+                siteEnds.markAll(changes, 0, reach);
+                drainSites(nuc, random, out, siteEnds, attempts, repeats, null, score);
+            }
+        }
+    }
+
+    /**
+     * Checks for repetitions: every motif of repeatLength bases that occurs again further on has the codons of its later copy recoded.
+     * @param nuc The nucleotide sequence, edited in place
+     * @param random The random source of the record
+     * @param out Receives a report line for each repetition found
+     * @param edits Receives the stretches changed, or null
+     * @param score Synthesis scores to keep up to date and screen changes with, or null
+     */
+    void removeRepeats(NucleotideBuffer nuc, SplittableRandom random, RecordOutput out, DirtyRegions edits, SequenceScore score)
+    {
+        /**
+         * Index of the repeat length k-mers still ahead of the check, kept up to date as codons are replaced
+         */
+        KmerIndex repeats = new KmerIndex(nuc, repeatLength);
+
+        for (int a = 0; a < nuc.length() - repeatLength - 1; a++)
+        {
+            /**
+             * The matching index of the pattern
+             */
+            int matIndex = repeats.advance(a);
+
+            if (matIndex != -1)
+            {
+                /**
+                 * The pattern to be used to check for reptitions
+                 */
+                String seqPat = nuc.substring(a, a + repeatLength);
+
+                if (codonStrategy != CodonStrategy.AVOID)
+                {
+                    recodeMotif(hostCodons, nuc, repeatLength, matIndex, random, repeats, edits, out.stats, score, true);
+                }
+                else if (!recodeRepeat(nuc, matIndex, random, repeats, edits, out.stats, score))
+                {
+                    out.event(ReportEvent.REPEAT_KEPT, seqPat, matIndex, null);
+                    continue;
+                }
+
+                out.event(ReportEvent.REPEAT_FIXED, seqPat, matIndex, nuc.substring(matIndex, matIndex + repeatLength));
+            }
+        }
+    }
+
+    /**
+     * Recodes a repeat length motif, unless doing so would make a restriction site, in which case the old codons are put back
+     * @param nuc The nucleotide sequence, edited in place
+     * @param pos The position of the motif
+     * @param random The random source of the record
+     * @param repeats A k-mer index to keep up to date with the changes
+     * @param edits Receives the stretch changed, or null
+     * @param stats Counts the codons changed, or null
+     * @param score Synthesis scores to keep up to date and screen changes with, or null
+     * @return False if the change was taken back
+     */
+    private boolean recodeRepeat(NucleotideBuffer nuc, int pos, SplittableRandom random, KmerIndex repeats, DirtyRegions edits, RecordStats stats,
+            SequenceScore score)
+    {
+        int[] motifFrame = findFrame(repeatLength, pos);
+        int[] oldCodons = new int[motifFrame.length];
+
+        for (int j = 0; j < motifFrame.length; j++)
+        {
+            oldCodons[j] = nuc.codonIndex(motifFrame[j]);
+        }
+
+        if (!recodeMotif(hostCodons, nuc, repeatLength, pos, random, repeats, null, stats, score, true))
+        {
+            return true;
+        }
+
+        int start = motifFrame[0];
+        int end = motifFrame[motifFrame.length - 1] + 3;
+        int reach = reScanner.maxLength() - 1;
+
+        if (siteFinder.find(nuc, start - reach, start, end + reach, new int[1]) >= 0)
+        {
+            for (int j = 0; j < motifFrame.length; j++)
+            {
+                nuc.setCodon(motifFrame[j], oldCodons[j]);
+            }
+            repeats.update(nuc, start, end);
+            if (score != null)
+            {
+                score.update(nuc, start, end);
+            }
+            return false;
+        }
+
+        if (edits != null)
+        {
+            edits.mark(start, end);
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks for RE sites, fix if found. The whole sequence is scanned once; after a fix only the positions where a site could
+     * now end, from the changed codon to one motif length past it, are scanned again.
+     * @param nuc The nucleotide sequence, edited in place
+     * @param random The random source of the record
+     * @param out Receives a report line for each site found
+     * @param edits Receives the stretches changed, or null
+     * @param score Synthesis scores to keep up to date and screen changes with, or null
+     */
+    void removeSites(NucleotideBuffer nuc, SplittableRandom random, RecordOutput out, DirtyRegions edits, SequenceScore score)
+    {
+        /**
+         * Positions where a site may end that are still to be scanned
+         */
+        DirtyRegions siteEnds = new DirtyRegions(nuc.length());
+        siteEnds.mark(0, nuc.length());
+
+        drainSites(nuc, random, out, siteEnds, new HashMap<Long, Integer>(), null, edits, score);
+    }
+
+    /**
+     * Scans the marked stretches for RE sites, leftmost first, fixing each site found and marking the positions its fix could
+     * have affected, until nothing is marked. A site that survives 100 fixes is given up on and reported.
+     * @param nuc The nucleotide sequence, edited in place
+     * @param random The random source of the record
+     * @param out Receives a report line for each site found
+     * @param siteEnds The positions where a site may end that are to be scanned; emptied by the scan
+     * @param attempts The number of fixes tried on each site, as position and motif number
+     * @param repeats A k-mer index to keep up to date with the changes, or null
+     * @param edits Receives the stretches changed, or null
+     * @param score Synthesis scores to keep up to date and screen changes with, or null
+     */
+    private void drainSites(NucleotideBuffer nuc, SplittableRandom random, RecordOutput out, DirtyRegions siteEnds,
+            Map<Long, Integer> attempts, KmerIndex repeats, DirtyRegions edits, SequenceScore score)
+    {
+        /**
+         * Receives the number of the motif found by the automaton
+         */
+        int[] hit = new int[1];
+
+        /**
+         * The stretches changed by a single fix
+         */
+        DirtyRegions changes = new DirtyRegions(nuc.length());
+
+        int reach = reScanner.maxLength() - 1;
+
+        while (!siteEnds.isEmpty())
+        {
+            int start = siteEnds.firstStart();
+            int end = siteEnds.firstEnd();
+
+            int checkRE = siteFinder.find(nuc, start - reach, start, end, hit);
+
+            if (checkRE < 0)
+            {
+                siteEnds.trimFirst(end);
+                continue;
+            }
+
+            String site = reScanner.motif(hit[0]);
+            int siteEnd = checkRE + site.length() - 1;
+            long siteKey = ((long) checkRE << 16) | hit[0];
+
+            Integer tried = attempts.get(siteKey);
+            tried = tried == null ? 1 : tried + 1;
+            attempts.put(siteKey, tried);
+
+            if (tried > 100)
+            {
+                if (tried == 101)
+                {
+                    out.event(ReportEvent.SITE_KEPT, site, checkRE, null);
+
+                    if (out.stats != null)
+                    {
+                        out.stats.failSafes++;
+                    }
+                }
+                siteEnds.trimFirst(siteEnd + 1);
+                continue;
+            }
+
+            siteEnds.trimFirst(siteEnd);
+            out.event(ReportEvent.SITE_FIXED, site, checkRE, null);
+
+            changes.clear();
+
+            // A site shorter than two codons, such as a five base one, starts a single codon, which may be one that cannot
+            // change; every codon it touches is recoded instead
+            boolean shortSite = site.length() < 6;
+            int first = shortSite ? checkRE - checkRE % 3 : checkRE;
+            int span = shortSite ? siteEnd - siteEnd % 3 + 3 - first : site.length();
+
+            recodeMotif(hostCodons, nuc, span, first, random, repeats, changes, out.stats, score, tried <= SCREENED_ATTEMPTS);
+
+            siteEnds.markAll(changes, 0, reach);
+
+            if (edits != null)
+            {
+                edits.markAll(changes, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Verifies the stretches changed by the repeat and site checks. Sites that could end in or just after a changed codon, and
+     * repeat length motifs that overlap one, are checked again; a site found is fixed as in the site check, and a motif found
+     * elsewhere in the sequence is recoded where it overlaps the change, unless that would make a site. Each fix marks only its own surroundings, so the work
+     * grows with the number of changes rather than the length of the sequence. Repeat fixes stop after one per codon, but
+     * sites are always checked to the end.
+     * @param nuc The nucleotide sequence, edited in place
+     * @param random The random source of the record
+     * @param out Receives a report line for each site and repetition found
+     * @param edits The stretches changed so far
+     * @param score Synthesis scores to keep up to date and screen changes with, or null
+     */
+    void verify(NucleotideBuffer nuc, SplittableRandom random, RecordOutput out, DirtyRegions edits, SequenceScore score)
+    {
+        if (edits.isEmpty())
+        {
+            return;
+        }
+
+        int reach = reScanner.maxLength() - 1;
+
+        /**
+         * Index of every repeat length k-mer, kept up to date as codons are replaced
+         */
+        KmerIndex repeats = new KmerIndex(nuc, repeatLength);
+
+        /**
+         * Positions where a site may end that are still to be checked
+         */
+        DirtyRegions siteEnds = new DirtyRegions(nuc.length());
+        siteEnds.markAll(edits, 0, reach);
+
+        /**
+         * Positions where a repeat length motif may start that are still to be checked
+         */
+        DirtyRegions kmerStarts = new DirtyRegions(nuc.length());
+        kmerStarts.markAll(edits, repeatLength - 1, 0);
+
+        /**
+         * The stretches changed by a single fix
+         */
+        DirtyRegions changes = new DirtyRegions(nuc.length());
+
+        Map<Long, Integer> attempts = new HashMap<>();
+
+        int fixes = 0;
+        int maxFixes = nuc.length() / 3;
+
+        while (true)
+        {
+            changes.clear();
+            drainSites(nuc, random, out, siteEnds, attempts, repeats, changes, score);
+            kmerStarts.markAll(changes, repeatLength - 1, 0);
+
+            if (kmerStarts.isEmpty())
+            {
+                break;
+            }
+
+            int a = kmerStarts.firstStart();
+
+            if (repeats.other(a) < 0)
+            {
+                kmerStarts.trimFirst(a + 1);
+                continue;
+            }
+
+            if (fixes >= maxFixes)
+            {
+                out.event(ReportEvent.VERIFY_STOPPED, null, fixes, null);
+
+                if (out.stats != null)
+                {
+                    out.stats.failSafes++;
+                }
+                break;
+            }
+
+            fixes++;
+
+            /**
+             * The pattern to be used to check for reptitions
+             */
+            String seqPat = nuc.substring(a, a + repeatLength);
+
+            changes.clear();
+
+            // Sites come first: a repeat fix that makes a site is taken back, and the repeat kept
+            if (recodeRepeat(nuc, a, random, repeats, changes, out.stats, score))
+            {
+                out.event(ReportEvent.REPEAT_FIXED, seqPat, a, nuc.substring(a, a + repeatLength));
+            }
+            else
+            {
+                out.event(ReportEvent.REPEAT_KEPT, seqPat, a, null);
+            }
+
+            if (changes.isEmpty())
+            {
+                kmerStarts.trimFirst(a + 1);
+            }
+
+            siteEnds.markAll(changes, 0, reach);
+            kmerStarts.markAll(changes, repeatLength - 1, 0);
+        }
+    }
+
+    /**
+     * Recodes the codons in frame within a motif. The first codon gets up to 100 random draws; once one codon has changed,
+     * the others get only 3, so the motif is broken without recoding more than needed.
+     * @param table The codon table of the host
+     * @param nuc The nucleotide sequence, edited in place
+     * @param motifLength The length of the motif
+     * @param pos The position of the motif
+     * @param random The random source of the record
+     * @param repeats A k-mer index to keep up to date with the changes, or null
+     * @param edits Receives the stretch of each codon changed, or null
+     * @param stats Counts the codons changed and the draws made, or null
+     * @param score Synthesis scores to keep up to date with the changes, or null
+     * @param screen True to turn down a codon that the synthesis scores would be worse for
+     * @return True if any codon changed
+     */
+    static boolean recodeMotif(CodonTable table, NucleotideBuffer nuc, int motifLength, int pos, SplittableRandom random, KmerIndex repeats, DirtyRegions edits, RecordStats stats,
+            SequenceScore score, boolean screen)
+    {
+        /**
+         * Switch to check and make sure that codon choices were good, otherwise recode.
+         */
+        boolean goodChoice = false;
+
+        int[] motifFrame = findFrame(motifLength, pos);
+
+        for (int j = 0; j < motifFrame.length; j++)
+        {
+            int codonPos = motifFrame[j];
+            int codon = nuc.codonIndex(codonPos);
+
+            int trys = 100;
+
+            if (goodChoice)
+            {
+                trys = 3;
+            }
+
+            int newCodon = newCodonRandom(table, codon, trys, random, stats);
+
+            if (newCodon != codon && screen && score != null && score.worsens(codonPos, newCodon))
+            {
+                newCodon = codon;
+
+                if (stats != null)
+                {
+                    stats.rejected++;
+                }
+            }
+
+            if (newCodon != codon)
+            {
+                goodChoice = true;
+                nuc.setCodon(codonPos, newCodon);
+
+                if (repeats != null)
+                {
+                    repeats.update(nuc, codonPos, codonPos + 3);
+                }
+
+                if (score != null)
+                {
+                    score.update(nuc, codonPos, codonPos + 3);
+                }
+
+                if (edits != null)
+                {
+                    edits.mark(codonPos, codonPos + 3);
+                }
+
+                if (stats != null)
+                {
+                    stats.substitutions++;
+                }
+            }
+        }
+
+        return goodChoice;
+    }
+}
@@ -0,0 +1,677 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Local HTTP service for protein2bioBrick
+ *
+ * Keeps one JVM warm, with the enzyme automata and codon tables already built, so other tools can convert proteins
+ * without paying for a JVM start each time. A client POSTs one or more FASTA records to {@code /convert}, choosing the
+ * assembly standard and other settings in the query string, and gets back one JSON line per record holding the DNA, its
+ * translation, the report row and the events. Records from requests arriving together are gathered into batches and run
+ * side by side on one shared worker pool. {@code GET /health} reports the counters of the service.
+ *
+ * Start it from the same jar as the program, e.g. {@code java -cp protein2bioBrick.jar BioBrickServer --port 8080}, then
+ * {@code curl --data-binary @proteins.fasta "http://localhost:8080/convert?standard=RFC[10]&ends=true"}
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class BioBrickServer
+{
+
+    /**
+     * The largest request body accepted, in bytes
+     */
+    public static final int MAX_BODY = 64 << 20;
+
+    /**
+     * The most engines kept warm at once, one for each combination of settings asked for
+     */
+    private static final int MAX_ENGINES = 64;
+
+    /**
+     * One record waiting to be processed, and the request it belongs to
+     */
+    private static final class Work
+    {
+        final BioBrickEngine engine;
+
+        final String sequence;
+
+        final String header;
+
+        final Request request;
+
+        /**
+         * The position of the record within its request
+         */
+        final int index;
+
+        Work(BioBrickEngine engine, String sequence, String header, Request request, int index)
+        {
+            this.engine = engine;
+            this.sequence = sequence;
+            this.header = header;
+            this.request = request;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The records of one request, filled in by the workers in any order
+     */
+    private static final class Request
+    {
+        final RecordOutput[] results;
+
+        final CountDownLatch done;
+
+        /**
+         * The first failure among the records, or null
+         */
+        volatile RuntimeException failure;
+
+        Request(int records)
+        {
+            results = new RecordOutput[records];
+            done = new CountDownLatch(records);
+        }
+    }
+
+    /**
+     * Records waiting to be gathered into a batch
+     */
+    private final LinkedBlockingQueue<Work> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The workers shared by every request
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The number of worker threads
+     */
+    private final int threads;
+
+    /**
+     * The most records gathered into one batch
+     */
+    private final int batchSize;
+
+    /**
+     * How long the first record of a batch waits for others to join it, in milliseconds
+     */
+    private final long batchDelay;
+
+    /**
+     * The codon table of the host, shared by every engine
+     */
+    private final CodonTable hostCodons;
+
+    /**
+     * The enzyme registry, shared by every engine
+     */
+    private final EnzymeRegistry enzymes;
+
+    /**
+     * Toggle for the vector site scanner in every engine
+     */
+    private final boolean vectorScan;
+
+    /**
+     * Finished records shared by every engine, or null
+     */
+    private final ResultCache cache;
+
+    /**
+     * The seed used when a request gives none
+     */
+    private final long defaultSeed;
+
+    /**
+     * Engines already set up, keyed on their settings, in order of last use
+     */
+    private final LinkedHashMap<String, BioBrickEngine> engines = new LinkedHashMap<String, BioBrickEngine>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BioBrickEngine> eldest)
+        {
+            return size() > MAX_ENGINES;
+        }
+    };
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong records = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * @param threads The number of worker threads
+     * @param batchSize The most records gathered into one batch
+     * @param batchDelay How long the first record of a batch waits for others, in milliseconds
+     * @param hostCodons The codon table of the host
+     * @param enzymes The enzyme registry; the sites of the enzymes it lists are removed along with those of the standard
+     * @param vectorScan True to scan for sites with the vector scanner, if it is available
+     * @param cacheSize The number of finished records kept in memory; 0 keeps none
+     * @param defaultSeed The seed used when a request gives none
+     */
+    public BioBrickServer(int threads, int batchSize, long batchDelay, CodonTable hostCodons, EnzymeRegistry enzymes, boolean vectorScan, int cacheSize,
+            long defaultSeed)
+    {
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = Math.max(0, batchDelay);
+        this.hostCodons = hostCodons;
+        this.enzymes = enzymes;
+        this.vectorScan = vectorScan;
+        this.cache = cacheSize > 0 ? new ResultCache(cacheSize, null) : null;
+        this.defaultSeed = defaultSeed;
+
+        pool = Executors.newFixedThreadPool(this.threads);
+    }
+
+    public static void main(String[] args)
+    {
+        String host = "127.0.0.1";
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batchSize = 64;
+        long batchDelay = 2;
+        int cacheSize = 4096;
+        long seed = new Random().nextLong();
+        CodonTable hostCodons = BioBrickEngine.codonTable;
+        EnzymeRegistry enzymes = EnzymeRegistry.defaults();
+        boolean vectorScan = false;
+        File profileFile = null;
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--batch-size":
+                        batchSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--batch-delay":
+                        batchDelay = Long.parseLong(args[++i]);
+                        break;
+                    case "--cache-size":
+                        cacheSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--codon-table":
+                        hostCodons = CodonTable.load(new File(args[++i]));
+                        break;
+                    case "--vector-scan":
+                        vectorScan = true;
+                        break;
+                    case "--enzymes":
+                        enzymes = EnzymeRegistry.load(new File(args[++i]));
+                        break;
+                    case "--profile-cache":
+                        profileFile = new File(args[++i]);
+                        break;
+                    default:
+                        usage();
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | IOException ex)
+        {
+            System.err.println("Bad option: " + ex.getMessage());
+            usage();
+        }
+
+        prepareStandards(enzymes, profileFile);
+
+        BioBrickServer server = new BioBrickServer(threads, batchSize, batchDelay, hostCodons, enzymes, vectorScan, cacheSize, seed);
+
+        try
+        {
+            server.start(new InetSocketAddress(host, port));
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Cannot listen on " + host + ":" + port + ": " + ex.getMessage());
+            System.exit(1);
+        }
+
+        System.out.println("Listening on http://" + host + ":" + port + "/convert, seed " + seed);
+    }
+
+    private static void usage()
+    {
+        System.err.println("Usage: BioBrickServer [--host <address>] [--port <port>] [-t <threads>] [--batch-size <records>]");
+        System.err.println("       [--batch-delay <ms>] [--cache-size <records>] [--seed <number>] [--codon-table <codon usage file>]");
+        System.err.println("       [--enzymes <enzyme registry file>] [--vector-scan] [--profile-cache <file>]");
+        System.exit(2);
+    }
+
+    /**
+     * Builds every assembly standard before the first request, reading them from the profile file when it holds them and
+     * writing it again when any had to be built
+     * @param enzymes The enzyme registry
+     * @param profileFile The profile file, or null to build every standard
+     */
+    private static void prepareStandards(EnzymeRegistry enzymes, File profileFile)
+    {
+        Logger logger = Logger.getLogger(BioBrickServer.class.getName());
+
+        if (profileFile != null && profileFile.isFile())
+        {
+            try
+            {
+                AssemblyStandard.loadProfiles(profileFile);
+            }
+            catch (IOException ex)
+            {
+                logger.log(Level.WARNING, "Ignoring profile cache " + profileFile, ex);
+            }
+        }
+
+        boolean compiled = false;
+
+        for (String name : AssemblyStandard.NAMES)
+        {
+            compiled |= AssemblyStandard.forName(name, enzymes).compiledHere();
+        }
+
+        if (profileFile != null && compiled)
+        {
+            try
+            {
+                AssemblyStandard.saveProfiles(profileFile);
+            }
+            catch (IOException ex)
+            {
+                logger.log(Level.WARNING, "Cannot write profile cache " + profileFile, ex);
+            }
+        }
+    }
+
+    /**
+     * Starts serving, and starts the thread that gathers records into batches
+     * @param address The address to listen on
+     * @return The running HTTP server
+     * @throws IOException If the address cannot be bound
+     */
+    public HttpServer start(InetSocketAddress address) throws IOException
+    {
+        HttpServer http = HttpServer.create(address, 0);
+
+        http.createContext("/convert", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                convert(exchange);
+            }
+        });
+
+        http.createContext("/health", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String body = "{\"status\":\"ok\",\"requests\":" + requests.get() + ",\"records\":" + records.get()
+                        + ",\"batches\":" + batches.get() + ",\"queued\":" + queue.size()
+                        + (cache == null ? "" : ",\"cache_hits\":" + cache.hits() + ",\"cache_misses\":" + cache.misses()) + "}\n";
+                respond(exchange, 200, "application/json", body);
+            }
+        });
+
+        // Request threads only parse and wait; the records themselves run on the shared pool
+        http.setExecutor(Executors.newCachedThreadPool());
+
+        Thread batcher = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                batchLoop();
+            }
+        }, "protein2bioBrick-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+
+        http.start();
+        return http;
+    }
+
+    /**
+     * Takes records off the queue, gathers those arriving close together into a batch, and splits the batch among the
+     * workers, each worker taking a run of records rather than one task per record
+     */
+    private void batchLoop()
+    {
+        List<Work> batch = new ArrayList<>();
+
+        while (true)
+        {
+            try
+            {
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + batchDelay * 1000000L;
+
+                while (batch.size() < batchSize)
+                {
+                    long wait = deadline - System.nanoTime();
+                    Work next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+
+                    if (next == null)
+                    {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+
+            batches.incrementAndGet();
+
+            int chunk = (batch.size() + threads - 1) / threads;
+
+            for (int start = 0; start < batch.size(); start += chunk)
+            {
+                final List<Work> part = new ArrayList<>(batch.subList(start, Math.min(batch.size(), start + chunk)));
+
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (Work work : part)
+                        {
+                            process(work);
+                        }
+                    }
+                });
+            }
+
+            batch.clear();
+        }
+    }
+
+    /**
+     * Processes one record and hands it to its request
+     */
+    private static void process(Work work)
+    {
+        try
+        {
+            work.request.results[work.index] = work.engine.processSeq(work.sequence, work.header, work.index + 1);
+        }
+        catch (RuntimeException ex)
+        {
+            work.request.failure = ex;
+        }
+        finally
+        {
+            work.request.done.countDown();
+        }
+    }
+
+    /**
+     * Serves {@code POST /convert}: reads the FASTA body, queues its records, waits for them, and writes them back in
+     * input order
+     */
+    private void convert(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "text/plain", "Records must be POSTed as FASTA\n");
+                return;
+            }
+
+            requests.incrementAndGet();
+
+            BioBrickEngine engine;
+            List<String> headers = new ArrayList<>();
+            List<String> sequences = new ArrayList<>();
+
+            try
+            {
+                engine = engine(query(exchange.getRequestURI().getRawQuery()));
+
+                try (FastaReader reader = FastaReader.open(new ByteArrayInputStream(readBody(exchange.getRequestBody()))))
+                {
+                    while (reader.next())
+                    {
+                        headers.add(reader.header());
+                        sequences.add(reader.sequence());
+                    }
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                respond(exchange, 400, "text/plain", ex.getMessage() + "\n");
+                return;
+            }
+
+            Request request = new Request(sequences.size());
+
+            for (int i = 0; i < sequences.size(); i++)
+            {
+                queue.add(new Work(engine, sequences.get(i), headers.get(i), request, i));
+            }
+            records.addAndGet(sequences.size());
+
+            try
+            {
+                request.done.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "text/plain", "Interrupted\n");
+                return;
+            }
+
+            if (request.failure != null)
+            {
+                Logger.getLogger(BioBrickServer.class.getName()).log(Level.SEVERE, "Cannot process request", request.failure);
+                respond(exchange, 500, "text/plain", "Cannot process request: " + request.failure + "\n");
+                return;
+            }
+
+            StringBuilder body = new StringBuilder();
+
+            for (RecordOutput record : request.results)
+            {
+                body.append(json(record)).append('\n');
+            }
+
+            respond(exchange, 200, "application/x-ndjson", body.toString());
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Finds or sets up the engine for the settings of a request
+     * @param params The query parameters of the request
+     * @return The engine
+     * @throws IllegalArgumentException If a setting is not valid
+     */
+    private BioBrickEngine engine(Map<String, String> params)
+    {
+        String standard = param(params, "standard", "GoldenGate-1");
+        boolean ends = Boolean.parseBoolean(param(params, "ends", "true"));
+        long seed = Long.parseLong(param(params, "seed", Long.toString(defaultSeed)));
+        int repeatLength = Integer.parseInt(param(params, "k", "8"));
+        boolean verify = Boolean.parseBoolean(param(params, "verify", "true"));
+        CodonStrategy codons = CodonStrategy.valueOf(param(params, "codons", "top").toUpperCase(Locale.ROOT));
+
+        if (repeatLength < 1 || repeatLength > KmerIndex.MAX_K)
+        {
+            throw new IllegalArgumentException("Repeat length must be from 1 to " + KmerIndex.MAX_K + ", not " + repeatLength);
+        }
+
+        String key = standard + '\t' + ends + '\t' + seed + '\t' + repeatLength + '\t' + verify + '\t' + codons;
+
+        synchronized (engines)
+        {
+            BioBrickEngine engine = engines.get(key);
+
+            if (engine == null)
+            {
+                engine = new BioBrickEngine(standard, ends, enzymes);
+                engine.seed = seed;
+                engine.repeatLength = repeatLength;
+                engine.verifyEdits = verify;
+                engine.codonStrategy = codons;
+                engine.hostCodons = hostCodons;
+                engine.reportFormat = ReportFormat.JSONL;
+                engine.verbosity = ReportVerbosity.EVENT;
+                engine.useCache(cache);
+                engine.vectorScan = vectorScan;
+                engine.chooseScanner();
+                engines.put(key, engine);
+            }
+
+            return engine;
+        }
+    }
+
+    /**
+     * Makes the JSON line for a record: its DNA, translation, report row and events
+     */
+    private static String json(RecordOutput record)
+    {
+        StringBuilder res = new StringBuilder();
+
+        res.append("{\"record\":").append(record.seqNumber)
+                .append(",\"dna\":").append(RecordOutput.json(record.dna))
+                .append(",\"translation\":").append(RecordOutput.json(record.translation))
+                .append(",\"report\":").append(record.report.toString().trim())
+                .append(",\"events\":[");
+
+        String events = record.events.toString().trim();
+
+        if (!events.isEmpty())
+        {
+            res.append(events.replaceAll("\\R+", ","));
+        }
+
+        return res.append("]}").toString();
+    }
+
+    /**
+     * Reads a request body, refusing one larger than {@link #MAX_BODY}
+     */
+    private static byte[] readBody(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        byte[] buf = new byte[1 << 16];
+        int n;
+
+        while ((n = in.read(buf)) > 0)
+        {
+            res.write(buf, 0, n);
+
+            if (res.size() > MAX_BODY)
+            {
+                throw new IllegalArgumentException("Request larger than " + MAX_BODY + " bytes");
+            }
+        }
+
+        return res.toByteArray();
+    }
+
+    /**
+     * Splits a raw query string into decoded parameters
+     */
+    private static Map<String, String> query(String raw) throws UnsupportedEncodingException
+    {
+        Map<String, String> res = new HashMap<>();
+
+        if (raw == null)
+        {
+            return res;
+        }
+
+        for (String pair : raw.split("&"))
+        {
+            int eq = pair.indexOf('=');
+
+            if (eq > 0)
+            {
+                res.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+
+        return res;
+    }
+
+    private static String param(Map<String, String> params, String name, String fallback)
+    {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? fallback : value;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+
+/**
+ * The checkpoint journal of a job
+ *
+ * As a job runs, a line is added to the journal in the job directory each time a batch of records is safely on disk,
+ * giving the number of records written, the offset in the input just after the last of them, and the length each output
+ * file had at that moment. A job run again with the same job ID and asked to resume cuts its output files back to those
+ * lengths, dropping anything written after the last checkpoint, and carries on from that offset in the input, so no
+ * record is lost or written twice.
+ *
+ * The journal starts with the seed of the job, the length and a fingerprint of its input, and a key of the settings that
+ * shape its output; a job whose input or settings differ is not resumed, so the files never mix the output of two.
+ *
+ * Every line is forced to disk before the job goes on; a line torn by a crash is ignored when the journal is read.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class Checkpoint implements Closeable
+{
+
+    public static final String FILE_NAME = "protein2bioBrick_checkpoint.txt";
+
+    /**
+     * The number of bytes at the start of the input taken into its fingerprint
+     */
+    private static final int FINGERPRINT_BYTES = 1 << 16;
+
+    /**
+     * The last checkpoint found in a journal
+     */
+    public static final class State
+    {
+        /**
+         * The seed of the job, which the resumed job must keep to make the same DNA
+         */
+        public final long seed;
+
+        /**
+         * The length of the input when the job started
+         */
+        public final long inputLength;
+
+        /**
+         * The fingerprint of the input when the job started, from {@link Checkpoint#fingerprint(File)}
+         */
+        public final long inputFingerprint;
+
+        /**
+         * The key of the settings that shape the output of the job, or null if the journal holds none
+         */
+        public final String settings;
+
+        /**
+         * The number of records written
+         */
+        public final int records;
+
+        /**
+         * The offset in the uncompressed input of the first record not written
+         */
+        public final long inputOffset;
+
+        /**
+         * The lengths of the result, report, back translation and events files; -1 for a file the job did not write
+         */
+        public final long[] lengths;
+
+        /**
+         * True if the job header had been written
+         */
+        public final boolean started;
+
+        /**
+         * True if the job had finished
+         */
+        public final boolean done;
+
+        State(long seed, long inputLength, long inputFingerprint, String settings, int records, long inputOffset, long[] lengths,
+              boolean started, boolean done)
+        {
+            this.seed = seed;
+            this.inputLength = inputLength;
+            this.inputFingerprint = inputFingerprint;
+            this.settings = settings;
+            this.records = records;
+            this.inputOffset = inputOffset;
+            this.lengths = lengths;
+            this.started = started;
+            this.done = done;
+        }
+    }
+
+    /**
+     * The output files of the job, in the order their lengths are journalled
+     */
+    private final File[] files;
+
+    private final FileOutputStream out;
+
+    /**
+     * Starts a new journal, replacing any left by an earlier job
+     * @param dir The job directory
+     * @param files The output files of the job: result, report, back translation and events, the last possibly null
+     * @param seed The seed of the job
+     * @param inputLength The length of the input
+     * @param inputFingerprint The fingerprint of the input, from {@link #fingerprint(File)}
+     * @param settings The key of the settings that shape the output of the job
+     * @throws IOException If the journal cannot be written
+     */
+    public Checkpoint(File dir, File[] files, long seed, long inputLength, long inputFingerprint, String settings) throws IOException
+    {
+        this(dir, files, false);
+
+        append("seed\t" + seed + "\ninput\t" + inputLength + "\t" + inputFingerprint + "\nsettings\t" + settings
+                + "\nstart" + lengths() + "\n");
+    }
+
+    /**
+     * Carries on with the journal of a job being resumed
+     * @param dir The job directory
+     * @param files The output files of the job: result, report, back translation and events, the last possibly null
+     * @throws IOException If the journal cannot be opened
+     */
+    public Checkpoint(File dir, File[] files) throws IOException
+    {
+        this(dir, files, true);
+    }
+
+    private Checkpoint(File dir, File[] files, boolean append) throws IOException
+    {
+        this.files = files.clone();
+        out = new FileOutputStream(new File(dir, FILE_NAME), append);
+    }
+
+    /**
+     * Records a checkpoint. The output files must have been forced to disk first, e.g. by {@link OutputSink#sync()}.
+     * @param records The number of records written
+     * @param inputOffset The offset in the uncompressed input of the first record not written
+     * @throws IOException If the journal cannot be written
+     */
+    public void commit(int records, long inputOffset) throws IOException
+    {
+        append("commit\t" + records + "\t" + inputOffset + lengths() + "\n");
+    }
+
+    /**
+     * Records the end of the job, after its summary
+     * @param records The number of records written
+     * @param inputOffset The offset in the uncompressed input after the last record
+     * @throws IOException If the journal cannot be written
+     */
+    public void done(int records, long inputOffset) throws IOException
+    {
+        append("done\t" + records + "\t" + inputOffset + lengths() + "\n");
+    }
+
+    private String lengths()
+    {
+        StringBuilder res = new StringBuilder();
+
+        for (File file : files)
+        {
+            res.append('\t').append(file == null ? -1 : file.length());
+        }
+
+        return res.toString();
+    }
+
+    private void append(String lines) throws IOException
+    {
+        out.write(lines.getBytes(StandardCharsets.UTF_8));
+        out.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+
+    /**
+     * Deletes the journal of a job, so a later resume does not go back to a checkpoint of an older job
+     * @param dir The job directory
+     */
+    public static void discard(File dir)
+    {
+        new File(dir, FILE_NAME).delete();
+    }
+
+    /**
+     * Reads the last checkpoint of a journal
+     * @param dir The job directory
+     * @return The last checkpoint, or null if there is no journal or it holds none
+     * @throws IOException If the journal cannot be read
+     */
+    public static State read(File dir) throws IOException
+    {
+        File file = new File(dir, FILE_NAME);
+
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        long seed = 0;
+        long inputLength = -1;
+        long inputFingerprint = 0;
+        String settings = null;
+        State last = null;
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            String line;
+
+            while ((line = in.readLine()) != null)
+            {
+                String[] parts = line.split("\t");
+
+                try
+                {
+                    switch (parts[0])
+                    {
+                        case "seed":
+                            seed = Long.parseLong(parts[1]);
+                            break;
+                        case "input":
+                            inputLength = Long.parseLong(parts[1]);
+                            inputFingerprint = Long.parseLong(parts[2]);
+                            break;
+                        case "settings":
+                            settings = parts[1];
+                            break;
+                        case "start":
+                            if (parts.length == 5)
+                            {
+                                last = new State(seed, inputLength, inputFingerprint, settings, 0, 0, parseLengths(parts, 1), false, false);
+                            }
+                            break;
+                        case "commit":
+                        case "done":
+                            if (parts.length == 7)
+                            {
+                                last = new State(seed, inputLength, inputFingerprint, settings, Integer.parseInt(parts[1]),
+                                        Long.parseLong(parts[2]), parseLengths(parts, 3), true, parts[0].equals("done"));
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+                {
+                    // A line torn by a crash; the checkpoint before it stands
+                }
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     * Fingerprints an input file by the CRC-32 of its first bytes, so an input replaced by another of the same length is
+     * caught without reading all of it
+     * @param input The input file
+     * @return The fingerprint
+     * @throws IOException If the file cannot be read
+     */
+    public static long fingerprint(File input) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[FINGERPRINT_BYTES];
+        int count = 0;
+
+        try (FileInputStream in = new FileInputStream(input))
+        {
+            int n;
+
+            while (count < buf.length && (n = in.read(buf, count, buf.length - count)) > 0)
+            {
+                count += n;
+            }
+        }
+
+        crc.update(buf, 0, count);
+        return crc.getValue();
+    }
+
+    private static long[] parseLengths(String[] parts, int from)
+    {
+        long[] res = new long[parts.length - from];
+
+        for (int i = 0; i < res.length; i++)
+        {
+            res[i] = Long.parseLong(parts[from + i]);
+        }
+
+        return res;
+    }
+
+    /**
+     * Cuts the output files of a job back to their lengths at a checkpoint
+     * @param state The checkpoint
+     * @param files The output files of the job: result, report, back translation and events, the last possibly null
+     * @throws IOException If a file is shorter than at the checkpoint, or cannot be cut
+     */
+    public static void restore(State state, File[] files) throws IOException
+    {
+        for (int i = 0; i < files.length; i++)
+        {
+            long length = state.lengths[i];
+
+            if (files[i] == null || length < 0)
+            {
+                continue;
+            }
+
+            if (files[i].length() < length)
+            {
+                throw new IOException(files[i] + " is shorter than at the last checkpoint, and cannot be resumed");
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(files[i], "rw"))
+            {
+                raf.setLength(length);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+
+/**
+ * Motif-avoiding codon assignment
+ *
+ * Walks the protein once, left to right, keeping for every state of the restriction site automaton the cheapest way of
+ * reaching it at the current codon boundary. The state each codon leads to, and the sites it completes, are read from the
+ * codon junction tables of the assembly standard. A codon whose bases would complete a site is charged a penalty far above any
+ * total of codon ranks, so the cheapest sequence found holds no site whenever such a sequence exists, and otherwise holds
+ * as few as possible. Ties go to the better ranked codon, so the result is the same on every run.
+ *
+ * The choices made at each amino acid are kept so the cheapest path can be followed back, one number per state. So that a
+ * long protein against a large automaton does not need them all at once, the protein is walked in blocks: only the costs at
+ * the start of each block are kept on the way forward, and on the way back each block is walked again from its start to
+ * recover its choices. A protein short enough for a single block is walked only once.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+final class CodonAssigner
+{
+
+    /**
+     * Cost of completing a restriction site, above any total of codon ranks
+     */
+    private static final long SITE_PENALTY = 1L << 40;
+
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    /**
+     * Marks a step through a codon with an unknown base, which returns the automaton to its start
+     */
+    private static final int NO_RANK = 7;
+
+    /**
+     * The most choices kept at once, one per state for each amino acid of a block: 16 megabytes
+     */
+    private static final int MAX_BACK_CELLS = 1 << 22;
+
+    /**
+     * The most costs kept at the starts of blocks, one per state for each block: 16 megabytes
+     */
+    private static final long MAX_CHECKPOINT_CELLS = 1L << 21;
+
+    private CodonAssigner()
+    {
+    }
+
+    /**
+     * @param length The length of a protein
+     * @param standard The assembly standard
+     * @return True if the protein can be assigned within the memory allowed
+     */
+    static boolean fits(int length, AssemblyStandard standard)
+    {
+        int states = standard.scanner().stateCount();
+
+        return (long) blockCount(length, blockLength(length, states)) * states <= MAX_CHECKPOINT_CELLS;
+    }
+
+    /**
+     * @return The number of amino acids walked per block, so a block's choices fit in {@link #MAX_BACK_CELLS}
+     */
+    private static int blockLength(int length, int states)
+    {
+        return Math.max(1, Math.min(length, MAX_BACK_CELLS / states));
+    }
+
+    private static int blockCount(int length, int block)
+    {
+        return (int) (((long) length + block - 1) / block);
+    }
+
+    /**
+     * Reverse translates a protein
+     * @param protein The protein sequence
+     * @param table The codon table
+     * @param standard The assembly standard, whose restriction sites are avoided
+     * @param nuc Receives the codons; three bases per amino acid
+     * @return The number of sites that could not be avoided
+     * @throws IllegalArgumentException If the protein does not {@link #fits(int, AssemblyStandard) fit}
+     */
+    static int assign(CharSequence protein, CodonTable table, AssemblyStandard standard, NucleotideBuffer nuc)
+    {
+        int states = standard.scanner().stateCount();
+        int length = protein.length();
+
+        if (!fits(length, standard))
+        {
+            throw new IllegalArgumentException("A protein of " + length + " amino acids is too long to assign codons to against " + states + " site states");
+        }
+
+        int block = blockLength(length, states);
+        int blocks = blockCount(length, block);
+
+        /**
+         * The cost of reaching each state at the start of each block
+         */
+        long[][] checkpoints = new long[blocks][];
+
+        /**
+         * For each amino acid of a block and state reached after it, the state before it and the rank of the codon taken,
+         * as (state << 3) | rank
+         */
+        int[] back = new int[Math.min(length, block) * states];
+
+        long[] cost = new long[states];
+        Arrays.fill(cost, UNREACHED);
+        cost[0] = 0;
+
+        for (int b = 0; b < blocks; b++)
+        {
+            checkpoints[b] = cost;
+            cost = walk(protein, table, standard, b * block, Math.min(length, (b + 1) * block), cost, back);
+        }
+
+        int state = length == 0 ? 0 : cheapest(cost);
+        long total = cost[state];
+
+        // Follow the choices back from the cheapest final state, block by block; the last block's choices are still in back
+        for (int b = blocks - 1; b >= 0; b--)
+        {
+            int from = b * block;
+            int to = Math.min(length, from + block);
+
+            if (b < blocks - 1)
+            {
+                walk(protein, table, standard, from, to, checkpoints[b], back);
+            }
+
+            for (int i = to - 1; i >= from; i--)
+            {
+                int step = back[(i - from) * states + state];
+                int rank = step & 7;
+
+                if (rank == NO_RANK)
+                {
+                    nuc.setCodon(i * 3, CodonTable.NO_CODON);
+                }
+                else
+                {
+                    nuc.setCodon(i * 3, table.codon(table.aminoIndex(protein.charAt(i)), rank));
+                }
+
+                state = step >>> 3;
+            }
+        }
+
+        return (int) (total / SITE_PENALTY);
+    }
+
+    /**
+     * Walks part of the protein, keeping the cheapest way of reaching each state
+     * @param from The first amino acid walked
+     * @param to The amino acid after the last
+     * @param start The cost of reaching each state before the first amino acid; left unchanged
+     * @param back Receives the choices made, from the first amino acid walked
+     * @return The cost of reaching each state after the last amino acid
+     */
+    private static long[] walk(CharSequence protein, CodonTable table, AssemblyStandard standard, int from, int to, long[] start, int[] back)
+    {
+        int states = start.length;
+        long[] cost = start.clone();
+        long[] nextCost = new long[states];
+
+        for (int i = from; i < to; i++)
+        {
+            Arrays.fill(nextCost, UNREACHED);
+            int row = (i - from) * states;
+            int amino = table.aminoIndex(protein.charAt(i));
+
+            if (amino < 0)
+            {
+                // The codon is written as nnn, which no site can span
+                int best = cheapest(cost);
+                nextCost[0] = cost[best];
+                back[row] = (best << 3) | NO_RANK;
+            }
+            else
+            {
+                int count = table.codonCount(amino);
+
+                for (int s = 0; s < states; s++)
+                {
+                    if (cost[s] == UNREACHED)
+                    {
+                        continue;
+                    }
+
+                    for (int rank = 0; rank < count; rank++)
+                    {
+                        int codon = table.codon(amino, rank);
+                        long c = cost[s] + rank + standard.sitesInCodon(s, codon) * SITE_PENALTY;
+                        int t = standard.afterCodon(s, codon);
+
+                        if (c < nextCost[t])
+                        {
+                            nextCost[t] = c;
+                            back[row + t] = (s << 3) | rank;
+                        }
+                    }
+                }
+            }
+
+            long[] swap = cost;
+            cost = nextCost;
+            nextCost = swap;
+        }
+
+        return cost;
+    }
+
+    /**
+     * @return The state with the lowest cost, the first one on a tie
+     */
+    private static int cheapest(long[] cost)
+    {
+        int best = 0;
+
+        for (int s = 1; s < cost.length; s++)
+        {
+            if (cost[s] < cost[best])
+            {
+                best = s;
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Determines how the codons of each record are first chosen, before the repeat and restriction site checks
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public enum CodonStrategy
+{
+    /**
+     * Take the best ranked codon for every amino acid, and leave restriction sites to be removed by random recoding
+     */
+    TOP,
+
+    /**
+     * Choose the codons in one pass over the protein, giving the best total of codon ranks among the sequences that hold no
+     * restriction site. If every sequence holds one, the fewest possible sites are left for the site check.
+     */
+    AVOID
+}
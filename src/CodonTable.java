@@ -0,0 +1,726 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * An immutable, direct-indexed codon table
+ *
+ * A codon is packed into a number from 0 to 63, two bits per base in the order a, c, g, t, so finding its amino acid or its
+ * rank is a single array read. Each amino acid holds its codons ordered from best to worst. Where a codon is listed for more
+ * than one amino acid, as the alanine codons are for the unknown residue X, it translates to the first amino acid listed.
+ *
+ * Each codon also carries its usage frequency. The frequencies of an amino acid are compiled into cumulative and alias
+ * method arrays, so a codon can be picked by usage fraction, or drawn at random in proportion to its usage in constant time.
+ * Tables for other hosts are loaded from codon usage files and kept for the life of the process.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class CodonTable
+{
+
+    /**
+     * Returned in place of a codon for an unknown amino acid, or a codon holding an unknown base
+     */
+    public static final int NO_CODON = -1;
+
+    private static final char[] LETTERS = {'a', 'c', 'g', 't'};
+
+    /**
+     * The amino acids a codon usage file must give codons for
+     */
+    private static final String REQUIRED_AMINOS = "ACDEFGHIKLMNPQRSTVWY";
+
+    /**
+     * Tables loaded from codon usage files, by canonical path
+     */
+    private static final Map<String, CodonTable> LOADED = new ConcurrentHashMap<>();
+
+    /**
+     * A codon and its usage frequency, as read from a codon usage file
+     */
+    private static final class Usage
+    {
+        final String codon;
+
+        final double frequency;
+
+        Usage(String codon, double frequency)
+        {
+            this.codon = codon;
+            this.frequency = frequency;
+        }
+    }
+
+    /**
+     * The name of the table, shown in the job report
+     */
+    private final String name;
+
+    /**
+     * The one letter code of each amino acid
+     */
+    private final char[] aminos;
+
+    /**
+     * Amino acid number for each one letter code, upper and lower case, or -1
+     */
+    private final int[] aminoIndex = new int[128];
+
+    /**
+     * The codons of each amino acid, best first
+     */
+    private final int[][] codons;
+
+    /**
+     * The amino acid number of each codon, or -1
+     */
+    private final int[] aminoOf = new int[64];
+
+    /**
+     * The rank of each codon among the codons of its amino acid, 0 being the best
+     */
+    private final int[] rankOf = new int[64];
+
+    /**
+     * The usage of each codon relative to the most used codon of its amino acid, from 0 to 1
+     */
+    private final double[] adaptiveness = new double[64];
+
+    /**
+     * For each amino acid, the share of its usage held by its codons up to and including each rank
+     */
+    private final double[][] cumulative;
+
+    /**
+     * Alias method tables for each amino acid: a draw picks a rank, keeps it with probability aliasProb, and otherwise
+     * takes aliasRank instead
+     */
+    private final double[][] aliasProb;
+
+    private final int[][] aliasRank;
+
+    /**
+     * A hash of the amino acids, codons and usage of the table, so results made with different tables are told apart
+     */
+    private final long fingerprint;
+
+    /**
+     * Compiles a table in which all codons of an amino acid are used equally
+     * @param aminoArr The one letter code of each amino acid
+     * @param codonArr The codons of each amino acid, best first
+     */
+    public CodonTable(String[] aminoArr, String[][] codonArr)
+    {
+        this("built in", aminoArr, codonArr, null);
+    }
+
+    /**
+     * Compiles a table
+     * @param name The name of the table, such as the host organism
+     * @param aminoArr The one letter code of each amino acid
+     * @param codonArr The codons of each amino acid, best first
+     * @param usage The usage frequency of each codon, in the same order, or null to use all codons equally
+     */
+    public CodonTable(String name, String[] aminoArr, String[][] codonArr, double[][] usage)
+    {
+        this.name = name;
+
+        aminos = new char[aminoArr.length];
+        codons = new int[aminoArr.length][];
+        cumulative = new double[aminoArr.length][];
+        aliasProb = new double[aminoArr.length][];
+        aliasRank = new int[aminoArr.length][];
+
+        Arrays.fill(aminoIndex, -1);
+        Arrays.fill(aminoOf, -1);
+
+        for (int i = 0; i < aminoArr.length; i++)
+        {
+            aminos[i] = Character.toUpperCase(aminoArr[i].charAt(0));
+            aminoIndex[aminos[i]] = i;
+            aminoIndex[Character.toLowerCase(aminos[i])] = i;
+
+            codons[i] = new int[codonArr[i].length];
+
+            for (int k = 0; k < codonArr[i].length; k++)
+            {
+                int codon = index(codonArr[i][k]);
+
+                if (codon == NO_CODON)
+                {
+                    throw new IllegalArgumentException("Bad codon " + codonArr[i][k] + " for amino acid " + aminoArr[i]);
+                }
+
+                codons[i][k] = codon;
+
+                // X may share the codons of another amino acid, which keeps them
+                if (aminoOf[codon] < 0 && aminos[i] != 'X')
+                {
+                    aminoOf[codon] = i;
+                    rankOf[codon] = k;
+                }
+            }
+
+            double[] weights = new double[codons[i].length];
+
+            for (int k = 0; k < weights.length; k++)
+            {
+                weights[k] = usage == null ? 1.0 : usage[i][k];
+
+                if (!(weights[k] >= 0.0) || Double.isInfinite(weights[k]))
+                {
+                    throw new IllegalArgumentException("Bad usage " + weights[k] + " for codon " + codonArr[i][k]);
+                }
+            }
+
+            compileWeights(i, weights);
+        }
+
+        int x = aminoIndex['X'];
+
+        if (x >= 0)
+        {
+            for (int k = 0; k < codons[x].length; k++)
+            {
+                if (aminoOf[codons[x][k]] < 0)
+                {
+                    aminoOf[codons[x][k]] = x;
+                    rankOf[codons[x][k]] = k;
+                }
+            }
+        }
+
+        // FNV-1a over everything that decides which codons are chosen
+        long h = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < aminos.length; i++)
+        {
+            h = (h ^ aminos[i]) * 0x100000001b3L;
+
+            for (int k = 0; k < codons[i].length; k++)
+            {
+                h = (h ^ codons[i][k]) * 0x100000001b3L;
+                h = (h ^ Double.doubleToLongBits(cumulative[i][k])) * 0x100000001b3L;
+            }
+        }
+
+        fingerprint = h;
+    }
+
+    /**
+     * Builds the cumulative and alias arrays of one amino acid. An amino acid whose codons are all unused uses them equally.
+     */
+    private void compileWeights(int amino, double[] weights)
+    {
+        int count = weights.length;
+        double total = 0.0;
+
+        for (double w : weights)
+        {
+            total += w;
+        }
+
+        if (total <= 0.0)
+        {
+            Arrays.fill(weights, 1.0);
+            total = count;
+        }
+
+        double most = 0.0;
+
+        for (double w : weights)
+        {
+            most = Math.max(most, w);
+        }
+
+        for (int k = 0; k < count; k++)
+        {
+            if (aminoOf[codons[amino][k]] == amino)
+            {
+                adaptiveness[codons[amino][k]] = weights[k] / most;
+            }
+        }
+
+        cumulative[amino] = new double[count];
+        double sum = 0.0;
+
+        for (int k = 0; k < count; k++)
+        {
+            sum += weights[k];
+            cumulative[amino][k] = sum / total;
+        }
+        if (count > 0)
+        {
+            cumulative[amino][count - 1] = 1.0;
+        }
+
+        // Vose's alias method: split the ranks into those under and over the average share, then pair them up
+        double[] prob = new double[count];
+        int[] alias = new int[count];
+        double[] scaled = new double[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int k = 0; k < count; k++)
+        {
+            scaled[k] = weights[k] * count / total;
+            alias[k] = k;
+
+            if (scaled[k] < 1.0)
+            {
+                small[smallCount++] = k;
+            }
+            else
+            {
+                large[largeCount++] = k;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0)
+        {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            prob[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+
+            if (scaled[more] < 1.0)
+            {
+                small[smallCount++] = more;
+            }
+            else
+            {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Whatever is left over is at the average share, up to rounding
+        while (largeCount > 0)
+        {
+            prob[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0)
+        {
+            prob[small[--smallCount]] = 1.0;
+        }
+
+        aliasProb[amino] = prob;
+        aliasRank[amino] = alias;
+    }
+
+    /**
+     * Loads a codon usage file, or returns the table already loaded from it. Each line gives an amino acid, a codon and its
+     * usage frequency, separated by spaces, tabs or commas, such as {@code A GCC 0.27}; blank lines and lines starting with
+     * # are skipped. Codons are ranked by frequency, the most used first. Every amino acid must have at least one codon, and
+     * if X is not listed it takes the codons of A, as in the built in table.
+     * @param file The codon usage file
+     * @return The compiled table, named after the file
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the file is not a valid codon usage table
+     */
+    public static CodonTable load(File file) throws IOException
+    {
+        String key = file.getCanonicalPath();
+        CodonTable table = LOADED.get(key);
+
+        if (table == null)
+        {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+            {
+                table = parse(in, file.getName());
+            }
+
+            CodonTable raced = LOADED.putIfAbsent(key, table);
+
+            if (raced != null)
+            {
+                table = raced;
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Reads and validates a codon usage table
+     * @param in The codon usage lines, as described for {@link #load(File)}
+     * @param name The name of the table
+     * @return The compiled table
+     * @throws IOException If the lines cannot be read
+     */
+    static CodonTable parse(BufferedReader in, String name) throws IOException
+    {
+        /**
+         * Codons and frequencies of each amino acid, in the order first listed
+         */
+        Map<Character, List<Usage>> entries = new LinkedHashMap<>();
+
+        /**
+         * The amino acid each codon was listed for, to catch a codon listed twice
+         */
+        char[] seen = new char[64];
+
+        String line;
+        int lineNo = 0;
+
+        while ((line = in.readLine()) != null)
+        {
+            lineNo++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] parts = line.split("[\\s,]+");
+
+            if (parts.length != 3 || parts[0].length() != 1)
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": expected an amino acid, a codon and a frequency");
+            }
+
+            char amino = Character.toUpperCase(parts[0].charAt(0));
+
+            if (REQUIRED_AMINOS.indexOf(amino) < 0 && amino != '*' && amino != 'X')
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": unknown amino acid " + parts[0]);
+            }
+
+            int codon = index(parts[1]);
+
+            if (codon == NO_CODON)
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": bad codon " + parts[1]);
+            }
+
+            if (seen[codon] != 0 && amino != 'X' && seen[codon] != 'X')
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": codon " + parts[1] + " is already listed for " + seen[codon]);
+            }
+            if (seen[codon] == 0 || seen[codon] == 'X')
+            {
+                seen[codon] = amino;
+            }
+
+            double frequency;
+
+            try
+            {
+                frequency = Double.parseDouble(parts[2]);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": bad frequency " + parts[2]);
+            }
+
+            if (!(frequency >= 0.0) || Double.isInfinite(frequency))
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": bad frequency " + parts[2]);
+            }
+
+            List<Usage> list = entries.get(amino);
+
+            if (list == null)
+            {
+                list = new ArrayList<>();
+                entries.put(amino, list);
+            }
+
+            list.add(new Usage(name(codon), frequency));
+        }
+
+        for (int i = 0; i < REQUIRED_AMINOS.length(); i++)
+        {
+            if (!entries.containsKey(REQUIRED_AMINOS.charAt(i)))
+            {
+                throw new IllegalArgumentException(name + ": no codons given for amino acid " + REQUIRED_AMINOS.charAt(i));
+            }
+        }
+
+        if (!entries.containsKey('X'))
+        {
+            entries.put('X', entries.get('A'));
+        }
+
+        String[] aminoArr = new String[entries.size()];
+        String[][] codonArr = new String[entries.size()][];
+        double[][] usage = new double[entries.size()][];
+        int i = 0;
+
+        for (Map.Entry<Character, List<Usage>> e : entries.entrySet())
+        {
+            List<Usage> list = new ArrayList<>(e.getValue());
+
+            // Most used first; the sort is stable, so ties keep the order of the file
+            Collections.sort(list, new Comparator<Usage>()
+            {
+                @Override
+                public int compare(Usage x, Usage y)
+                {
+                    return Double.compare(y.frequency, x.frequency);
+                }
+            });
+
+            aminoArr[i] = String.valueOf(e.getKey());
+            codonArr[i] = new String[list.size()];
+            usage[i] = new double[list.size()];
+
+            for (int k = 0; k < list.size(); k++)
+            {
+                codonArr[i][k] = list.get(k).codon;
+                usage[i][k] = list.get(k).frequency;
+            }
+            i++;
+        }
+
+        return new CodonTable(name, aminoArr, codonArr, usage);
+    }
+
+    /**
+     * Packs a codon
+     * @param codon Three nucleotides, upper or lower case
+     * @return The codon number, from 0 to 63, or {@link #NO_CODON}
+     */
+    public static int index(CharSequence codon)
+    {
+        if (codon.length() != 3)
+        {
+            return NO_CODON;
+        }
+
+        int res = 0;
+
+        for (int i = 0; i < 3; i++)
+        {
+            int base = MotifAutomaton.code(codon.charAt(i));
+
+            if (base < 0)
+            {
+                return NO_CODON;
+            }
+            res = (res << 2) | base;
+        }
+
+        return res;
+    }
+
+    /**
+     * @param codon A codon number
+     * @return The codon as three lower case letters, or nnn for {@link #NO_CODON}
+     */
+    public static String name(int codon)
+    {
+        if (codon == NO_CODON)
+        {
+            return "nnn";
+        }
+
+        return new String(new char[] {LETTERS[codon >> 4], LETTERS[(codon >> 2) & 3], LETTERS[codon & 3]});
+    }
+
+    /**
+     * @param aminoAcid A one letter amino acid code, upper or lower case
+     * @return The number of the amino acid in this table, or -1 if it has none
+     */
+    public int aminoIndex(char aminoAcid)
+    {
+        return aminoAcid < 128 ? aminoIndex[aminoAcid] : -1;
+    }
+
+    /**
+     * @param amino An amino acid number
+     * @return The one letter code of the amino acid
+     */
+    public char amino(int amino)
+    {
+        return aminos[amino];
+    }
+
+    /**
+     * @return The number of amino acids in the table
+     */
+    public int aminoCount()
+    {
+        return aminos.length;
+    }
+
+    /**
+     * @param amino An amino acid number
+     * @return The number of codons for the amino acid
+     */
+    public int codonCount(int amino)
+    {
+        return codons[amino].length;
+    }
+
+    /**
+     * @param amino An amino acid number
+     * @param rank The rank of the codon, 0 being the best
+     * @return The codon number
+     */
+    public int codon(int amino, int rank)
+    {
+        return codons[amino][rank];
+    }
+
+    /**
+     * Picks the codon of an amino acid at a point of its usage, walking the codons from the most to the least used
+     * @param amino An amino acid number
+     * @param fraction The point, from 0 for the most used codon to 1 for the least
+     * @return The codon number
+     */
+    public int codonAt(int amino, double fraction)
+    {
+        double[] cum = cumulative[amino];
+        int rank = 0;
+
+        while (rank < cum.length - 1 && cum[rank] <= fraction)
+        {
+            rank++;
+        }
+
+        return codons[amino][rank];
+    }
+
+    /**
+     * Draws a codon of an amino acid in proportion to its usage, in constant time
+     * @param amino An amino acid number
+     * @param random The random source
+     * @return The codon number
+     */
+    public int sample(int amino, SplittableRandom random)
+    {
+        int rank = random.nextInt(codons[amino].length);
+        double prob = aliasProb[amino][rank];
+
+        // Ranks holding exactly their share need no second draw, so a table of equal usage draws as a plain uniform pick
+        if (prob < 1.0 && random.nextDouble() >= prob)
+        {
+            rank = aliasRank[amino][rank];
+        }
+
+        return codons[amino][rank];
+    }
+
+    /**
+     * @return A hash of the contents of the table; tables that choose codons alike have the same fingerprint
+     */
+    public long fingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * @return The name of the table
+     */
+    public String name()
+    {
+        return name;
+    }
+
+    /**
+     * @param codon A codon number
+     * @return The amino acid number the codon translates to, or -1 for {@link #NO_CODON} or a codon not in the table
+     */
+    public int aminoOf(int codon)
+    {
+        return codon < 0 ? -1 : aminoOf[codon];
+    }
+
+    /**
+     * @param codon A codon number in the table
+     * @return The usage of the codon relative to the most used codon of its amino acid, from 0 to 1; 1 for every codon of a
+     * table without usage frequencies
+     */
+    public double adaptiveness(int codon)
+    {
+        return adaptiveness[codon];
+    }
+
+    /**
+     * @param codon A codon number in the table
+     * @return The rank of the codon among the codons of its amino acid, 0 being the best
+     */
+    public int rank(int codon)
+    {
+        return rankOf[codon];
+    }
+
+    /**
+     * Translates a nucleotide sequence. A final partial codon is padded with a, and codons not in the table are left out.
+     * @param nuc The nucleotide sequence
+     * @return The protein sequence
+     */
+    public String translate(CharSequence nuc)
+    {
+        int size = nuc.length();
+        StringBuilder prot = new StringBuilder(size / 3 + 1);
+
+        for (int i = 0; i < size; i += 3)
+        {
+            int codon = 0;
+
+            for (int j = i; j < i + 3; j++)
+            {
+                int base = j < size ? MotifAutomaton.code(nuc.charAt(j)) : 0;
+
+                if (base < 0 || codon < 0)
+                {
+                    codon = NO_CODON;
+                }
+                else
+                {
+                    codon = (codon << 2) | base;
+                }
+            }
+
+            int amino = aminoOf(codon);
+
+            if (amino >= 0)
+            {
+                prot.append(aminos[amino]);
+            }
+        }
+
+        return prot.toString();
+    }
+
+    /**
+     * Counts the codons of a sequence by rank
+     * @param nuc The nucleotide sequence, in frame
+     * @param res Receives the count for each rank, 0 being the best. Ranks beyond its length are not counted.
+     */
+    public void countRanks(NucleotideBuffer nuc, int[] res)
+    {
+        for (int i = 0; i + 2 < nuc.length(); i += 3)
+        {
+            int codon = nuc.codonIndex(i);
+
+            if (codon != NO_CODON && aminoOf[codon] >= 0 && rankOf[codon] < res.length)
+            {
+                res[rankOf[codon]]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A set of stretches of a sequence that still need checking
+ *
+ * Stretches are kept merged and in order, so the repair loops can take the leftmost one, check it, and mark only the
+ * positions touched by each codon change as needing another look.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+final class DirtyRegions
+{
+
+    /**
+     * Start of each stretch, mapped to the position after its end. Stretches never overlap or touch.
+     */
+    private final TreeMap<Integer, Integer> regions = new TreeMap<>();
+
+    /**
+     * Marks are clipped to positions below this
+     */
+    private final int limit;
+
+    /**
+     * @param limit The length of the sequence; marks are clipped to it
+     */
+    DirtyRegions(int limit)
+    {
+        this.limit = limit;
+    }
+
+    /**
+     * Marks a stretch, merging it with any stretch it overlaps or touches
+     * @param start The first position
+     * @param end The position after the last
+     */
+    void mark(int start, int end)
+    {
+        start = Math.max(0, start);
+        end = Math.min(limit, end);
+
+        if (start >= end)
+        {
+            return;
+        }
+
+        Map.Entry<Integer, Integer> before = regions.floorEntry(start);
+
+        if (before != null && before.getValue() >= start)
+        {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+            regions.remove(before.getKey());
+        }
+
+        Map.Entry<Integer, Integer> after;
+
+        while ((after = regions.ceilingEntry(start)) != null && after.getKey() <= end)
+        {
+            end = Math.max(end, after.getValue());
+            regions.remove(after.getKey());
+        }
+
+        regions.put(start, end);
+    }
+
+    /**
+     * Marks every stretch of another set, widened on both sides
+     * @param other The stretches to mark
+     * @param before Positions added in front of each stretch
+     * @param after Positions added behind each stretch
+     */
+    void markAll(DirtyRegions other, int before, int after)
+    {
+        for (Map.Entry<Integer, Integer> e : other.regions.entrySet())
+        {
+            mark(e.getKey() - before, e.getValue() + after);
+        }
+    }
+
+    /**
+     * @return True if nothing is marked
+     */
+    boolean isEmpty()
+    {
+        return regions.isEmpty();
+    }
+
+    /**
+     * @return The first position of the leftmost stretch
+     */
+    int firstStart()
+    {
+        return regions.firstKey();
+    }
+
+    /**
+     * @return The position after the end of the leftmost stretch
+     */
+    int firstEnd()
+    {
+        return regions.firstEntry().getValue();
+    }
+
+    /**
+     * Unmarks the front of the leftmost stretch
+     * @param start The new first position of the stretch; at or beyond its end, the stretch is removed
+     */
+    void trimFirst(int start)
+    {
+        Map.Entry<Integer, Integer> first = regions.pollFirstEntry();
+
+        if (start < first.getValue())
+        {
+            regions.put(Math.max(start, first.getKey()), first.getValue());
+        }
+    }
+
+    /**
+     * Unmarks everything
+     */
+    void clear()
+    {
+        regions.clear();
+    }
+}
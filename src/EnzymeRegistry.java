@@ -0,0 +1,265 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Registry of restriction enzymes and their recognition sites
+ *
+ * A site is written 5' to 3' on one strand, in upper case, and may use the IUPAC degenerate letters, such as N for any base
+ * or W for a or t; the other strand is never written out by hand, as {@link #patterns(List)} adds the reverse complement of
+ * every site that is not its own. The built in registry holds the enzymes of the assembly standards and other common
+ * ones; a registry file may add more, or give other sites for enzymes already known. Registries are immutable and may be
+ * shared between threads.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class EnzymeRegistry
+{
+
+    /**
+     * The built in enzymes, as a name and a site each
+     */
+    private static final String[] BUILT_IN = {
+            "EcoRI GAATTC", "XbaI TCTAGA", "SpeI ACTAGT", "PstI CTGCAG", "NotI GCGGCCGC", "NheI GCTAGC", "PvuII CAGCTG",
+            "XhoI CTCGAG", "AvrII CCTAGG", "SapI GCTCTTC", "BglII AGATCT", "BamHI GGATCC", "NgoMIV GCCGGC", "AgeI ACCGGT",
+            "BsaI GGTCTC", "BsmBI CGTCTC", "Esp3I CGTCTC", "BbsI GAAGAC", "AarI CACCTGC", "PaqCI CACCTGC", "BtgZI GCGATG",
+            "HindIII AAGCTT", "KpnI GGTACC", "Acc65I GGTACC", "SacI GAGCTC", "SacII CCGCGG", "SalI GTCGAC", "SmaI CCCGGG",
+            "XmaI CCCGGG", "NcoI CCATGG", "NdeI CATATG", "SphI GCATGC", "ClaI ATCGAT", "EcoRV GATATC", "HpaI GTTAAC",
+            "MluI ACGCGT", "NsiI ATGCAT", "ApaI GGGCCC", "AscI GGCGCGCC", "PacI TTAATTAA", "SwaI ATTTAAAT", "FseI GGCCGGCC",
+            "PmeI GTTTAAAC", "SbfI CCTGCAGG", "AflII CTTAAG", "MfeI CAATTG", "StuI AGGCCT", "ScaI AGTACT", "DraI TTTAAA",
+            "BspHI TCATGA", "AatII GACGTC", "BsiWI CGTACG", "BsmI GAATGC", "SfiI GGCCNNNNNGGCC", "BglI GCCNNNNNGGC",
+            "XmnI GAANNNNTTC", "DraIII CACNNNGTG", "AvaI CYCGRG", "BsoBI CYCGRG", "HincII GTYRAC", "BsrFI RCCGGY",
+            "BanII GRGCYC", "StyI CCWWGG", "AccI GTMKAC", "HaeII RGCGCY", "EaeI YGGCCR", "BsiHKAI GWGCWC", "MspA1I CMGCKG",
+            "AvaII GGWCC", "Fnu4HI GCNGC", "BstNI CCWGG", "ScrFI CCNGG", "Sau96I GGNCC", "DdeI CTNAG", "HinfI GANTC"
+    };
+
+    /**
+     * The IUPAC letter of each base mask, as coded by {@link MotifAutomaton#mask(char)}
+     */
+    private static final String IUPAC = "-ACMGRSVTWYHKDBN";
+
+    private static final EnzymeRegistry DEFAULTS = new EnzymeRegistry(builtIn(), Collections.<String>emptyList());
+
+    /**
+     * The site of each enzyme, by name
+     */
+    private final Map<String, String> sites;
+
+    /**
+     * The enzymes named in the registry file, in the order listed
+     */
+    private final List<String> listed;
+
+    private EnzymeRegistry(Map<String, String> sites, List<String> listed)
+    {
+        this.sites = Collections.unmodifiableMap(sites);
+        this.listed = Collections.unmodifiableList(listed);
+    }
+
+    private static Map<String, String> builtIn()
+    {
+        Map<String, String> res = new LinkedHashMap<>();
+
+        for (String entry : BUILT_IN)
+        {
+            String[] parts = entry.split(" ");
+            res.put(parts[0], parts[1]);
+        }
+
+        return res;
+    }
+
+    /**
+     * @return The built in registry
+     */
+    public static EnzymeRegistry defaults()
+    {
+        return DEFAULTS;
+    }
+
+    /**
+     * Loads a registry file on top of the built in registry. Each line gives an enzyme name and, optionally, its site,
+     * separated by spaces, tabs or commas, such as {@code Fnu4HI GCNGC}; a name alone picks a built in enzyme. A ^ marking
+     * the cut is ignored. Blank lines and lines starting with # are skipped.
+     * @param file The registry file
+     * @return The registry, listing the enzymes of the file
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line names an unknown enzyme without a site, or gives a bad site
+     */
+    public static EnzymeRegistry load(File file) throws IOException
+    {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            return parse(in, file.getName());
+        }
+    }
+
+    /**
+     * Reads and validates registry lines
+     * @param in The registry lines, as described for {@link #load(File)}
+     * @param name The name of the registry, for error messages
+     * @return The registry
+     * @throws IOException If the lines cannot be read
+     */
+    static EnzymeRegistry parse(BufferedReader in, String name) throws IOException
+    {
+        Map<String, String> sites = builtIn();
+        List<String> listed = new ArrayList<>();
+
+        String line;
+        int lineNo = 0;
+
+        while ((line = in.readLine()) != null)
+        {
+            lineNo++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] parts = line.split("[\\s,]+");
+
+            if (parts.length > 2)
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": expected an enzyme name and a site");
+            }
+
+            if (parts.length == 2)
+            {
+                String site = parts[1].replace("^", "").toUpperCase(Locale.ROOT);
+
+                if (!isSite(site))
+                {
+                    throw new IllegalArgumentException(name + " line " + lineNo + ": bad site " + parts[1]);
+                }
+
+                sites.put(parts[0], site);
+            }
+            else if (!sites.containsKey(parts[0]))
+            {
+                throw new IllegalArgumentException(name + " line " + lineNo + ": no site given for unknown enzyme " + parts[0]);
+            }
+
+            if (!listed.contains(parts[0]))
+            {
+                listed.add(parts[0]);
+            }
+        }
+
+        return new EnzymeRegistry(sites, listed);
+    }
+
+    /**
+     * @param site A site, in upper case
+     * @return True if the site is made only of nucleotide and IUPAC letters
+     */
+    private static boolean isSite(String site)
+    {
+        if (site.isEmpty())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < site.length(); i++)
+        {
+            if (MotifAutomaton.mask(site.charAt(i)) == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param name The name of an enzyme
+     * @return The site of the enzyme, in upper case, or null if it is unknown
+     */
+    public String site(String name)
+    {
+        return sites.get(name);
+    }
+
+    /**
+     * @return The enzymes named in the registry file, in the order listed; empty for the built in registry
+     */
+    public List<String> listed()
+    {
+        return listed;
+    }
+
+    /**
+     * Makes the search patterns for a set of enzymes: the site of each, in lower case, followed by its reverse complement
+     * unless the site is its own. A pattern already made for an earlier enzyme is not repeated.
+     * @param names The enzyme names
+     * @return The patterns, ready for a {@link MotifAutomaton}
+     * @throws IllegalArgumentException If an enzyme is unknown
+     */
+    public String[] patterns(List<String> names)
+    {
+        List<String> res = new ArrayList<>();
+
+        for (String name : names)
+        {
+            String site = sites.get(name);
+
+            if (site == null)
+            {
+                throw new IllegalArgumentException("Unknown restriction enzyme " + name);
+            }
+
+            String forward = site.toLowerCase(Locale.ROOT);
+            String reverse = reverseComplement(site).toLowerCase(Locale.ROOT);
+
+            if (!res.contains(forward))
+            {
+                res.add(forward);
+            }
+            if (!res.contains(reverse))
+            {
+                res.add(reverse);
+            }
+        }
+
+        return res.toArray(new String[0]);
+    }
+
+    /**
+     * Reverse complements a site, degenerate letters included: R pairs with Y, K with M, B with V and D with H, while S, W
+     * and N pair with themselves
+     * @param site The site
+     * @return The site of the other strand, read 5' to 3', in upper case
+     */
+    public static String reverseComplement(String site)
+    {
+        StringBuilder res = new StringBuilder(site.length());
+
+        for (int i = site.length() - 1; i >= 0; i--)
+        {
+            int mask = MotifAutomaton.mask(site.charAt(i));
+
+            // Swapping the a and t bits and the c and g bits complements every base the letter stands for
+            int comp = ((mask & 1) << 3) | ((mask & 8) >> 3) | ((mask & 2) << 1) | ((mask & 4) >> 1);
+
+            res.append(IUPAC.charAt(comp));
+        }
+
+        return res.toString();
+    }
+}
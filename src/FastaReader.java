@@ -0,0 +1,447 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Streaming reader for FASTA files
+ *
+ * Reads one record at a time, building the sequence in a buffer that is reused from record to record, so the cost of a
+ * record is linear in its length. A line starting with '>' begins a new record; '>' anywhere else is not a header.
+ * Whitespace within sequence lines is dropped. Large plain files are read through a memory-mapped channel, and gzip
+ * compressed files are decompressed on the fly. Headers are read as UTF-8, the charset the output files are written in.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class FastaReader implements Closeable
+{
+
+    /**
+     * Plain files at least this large are memory-mapped rather than read through a stream
+     */
+    public static final long MAP_THRESHOLD = 1L << 26;
+
+    /**
+     * The largest part of a file mapped at once
+     */
+    private static final int MAP_WINDOW = 1 << 28;
+
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    /**
+     * Header line of the current record, including the leading '>'
+     */
+    private String header = "";
+
+    /**
+     * The bytes of the header line being read, decoded once the whole line is in, so a character of several bytes is
+     * never split
+     */
+    private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+
+    /**
+     * Sequence of the current record, reused for every record
+     */
+    private final StringBuilder sequence = new StringBuilder();
+
+    /**
+     * The channel of a memory-mapped file, or null when reading a stream
+     */
+    private final FileChannel channel;
+
+    /**
+     * The stream being read, or null when reading a memory-mapped file
+     */
+    private final InputStream stream;
+
+    /**
+     * The bytes currently available, either a mapped window or a filled stream buffer
+     */
+    private ByteBuffer buf;
+
+    /**
+     * Offset, in the uncompressed input, of the first byte of buf
+     */
+    private long bufStart = 0;
+
+    /**
+     * Offset, in the uncompressed input, at which the current record starts
+     */
+    private long recordStart = 0;
+
+    /**
+     * Offset, in the uncompressed input, of the byte after the current record
+     */
+    private long recordEnd = 0;
+
+    /**
+     * True if the last byte read ended a line, or nothing has been read yet
+     */
+    private boolean lineStart = true;
+
+    /**
+     * True if the '>' of the next record has already been read
+     */
+    private boolean headerPending = false;
+
+    /**
+     * Counts the bytes taken from a compressed file, or null when the input is not compressed
+     */
+    private final CountingInputStream compressed;
+
+    /**
+     * An input stream that counts the bytes read through it
+     */
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        long count = 0;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b >= 0)
+            {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0)
+            {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private FastaReader(FileChannel channel, InputStream stream)
+    {
+        this(channel, stream, null);
+    }
+
+    private FastaReader(FileChannel channel, InputStream stream, CountingInputStream compressed)
+    {
+        this.channel = channel;
+        this.stream = stream;
+        this.compressed = compressed;
+
+        if (stream != null)
+        {
+            buf = ByteBuffer.wrap(new byte[STREAM_BUFFER]);
+        }
+        else
+        {
+            buf = ByteBuffer.allocate(0);
+        }
+        buf.limit(0);
+    }
+
+    /**
+     * Opens a FASTA file, choosing how to read it: gzip files are recognized by their magic number and decompressed,
+     * plain files of at least {@link #MAP_THRESHOLD} bytes are memory-mapped, and smaller plain files are streamed.
+     * @param file The FASTA file
+     * @return A reader positioned before the first record
+     * @throws IOException If the file cannot be opened
+     */
+    public static FastaReader open(File file) throws IOException
+    {
+        if (isGzip(file))
+        {
+            CountingInputStream counted = new CountingInputStream(new FileInputStream(file));
+            return new FastaReader(null, new GZIPInputStream(counted, STREAM_BUFFER), counted);
+        }
+
+        if (file.length() >= MAP_THRESHOLD)
+        {
+            FileInputStream in = new FileInputStream(file);
+            return new FastaReader(in.getChannel(), null);
+        }
+
+        return new FastaReader(null, new FileInputStream(file));
+    }
+
+    /**
+     * Reads from any stream, e.g. a request body. The stream is closed with the reader.
+     * @param in The stream of FASTA text
+     * @return A reader positioned before the first record
+     */
+    public static FastaReader open(InputStream in)
+    {
+        return new FastaReader(null, in);
+    }
+
+    private static boolean isGzip(File file) throws IOException
+    {
+        try (FileInputStream in = new FileInputStream(file))
+        {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Moves to the next record. Text before the first header is read as a record with an empty header.
+     * @return True if a record was read, false at the end of the input
+     * @throws IOException If the input cannot be read
+     */
+    public boolean next() throws IOException
+    {
+        header = "";
+        sequence.setLength(0);
+
+        boolean haveRecord = false;
+
+        if (headerPending)
+        {
+            headerPending = false;
+            readHeader();
+            haveRecord = true;
+        }
+        else
+        {
+            recordStart = position();
+        }
+
+        while (true)
+        {
+            if (!buf.hasRemaining() && !refill())
+            {
+                recordEnd = position();
+                return haveRecord || sequence.length() > 0;
+            }
+
+            byte b = buf.get();
+
+            if (b == '>' && lineStart)
+            {
+                if (haveRecord || sequence.length() > 0)
+                {
+                    // The header belongs to the next record
+                    headerPending = true;
+                    recordStart = position() - 1;
+                    recordEnd = recordStart;
+                    return true;
+                }
+
+                readHeader();
+                haveRecord = true;
+            }
+            else if (b == '\n')
+            {
+                lineStart = true;
+            }
+            else
+            {
+                lineStart = false;
+
+                if (b > ' ')
+                {
+                    sequence.append((char) b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a header line, the '>' having been read already
+     */
+    private void readHeader() throws IOException
+    {
+        headerBytes.reset();
+        headerBytes.write('>');
+
+        while (buf.hasRemaining() || refill())
+        {
+            byte b = buf.get();
+
+            if (b == '\n')
+            {
+                break;
+            }
+            if (b != '\r')
+            {
+                headerBytes.write(b);
+            }
+        }
+
+        header = new String(headerBytes.toByteArray(), StandardCharsets.UTF_8);
+        lineStart = true;
+    }
+
+    /**
+     * @return The header line of the current record, including the leading '>'
+     */
+    public String header()
+    {
+        return header;
+    }
+
+    /**
+     * @return The sequence of the current record, with line breaks and whitespace removed
+     */
+    public String sequence()
+    {
+        return sequence.toString();
+    }
+
+    /**
+     * @return The offset, in the uncompressed input, of the first byte of the current record
+     */
+    public long recordStart()
+    {
+        return recordStart;
+    }
+
+    /**
+     * @return The offset, in the uncompressed input, of the byte after the current record: the start of the next record,
+     * or the end of the input
+     */
+    public long recordEnd()
+    {
+        return recordEnd;
+    }
+
+    /**
+     * Moves forward to an offset, as recorded by {@link #recordEnd()} in an earlier pass, without reading the records
+     * before it. A mapped file is simply positioned there; a stream is skipped, which for a gzip file means decompressing
+     * up to the offset.
+     * @param offset The offset, in the uncompressed input, of the start of a record
+     * @throws IOException If the input cannot be read, or ends before the offset
+     */
+    public void skipTo(long offset) throws IOException
+    {
+        if (position() != 0 || headerPending)
+        {
+            throw new IllegalStateException("Records have already been read");
+        }
+
+        if (channel != null)
+        {
+            if (offset > channel.size())
+            {
+                throw new EOFException("Input ends before offset " + offset);
+            }
+        }
+        else
+        {
+            long left = offset;
+
+            while (left > 0)
+            {
+                long n = stream.skip(left);
+
+                if (n <= 0)
+                {
+                    // skip() may stop short without the end being reached, so read a byte to be sure
+                    if (stream.read() < 0)
+                    {
+                        throw new EOFException("Input ends before offset " + offset);
+                    }
+                    n = 1;
+                }
+                left -= n;
+            }
+        }
+
+        bufStart = offset;
+        buf.limit(0);
+        lineStart = true;
+        recordStart = offset;
+        recordEnd = offset;
+    }
+
+    /**
+     * @return The number of uncompressed bytes read so far
+     */
+    public long position()
+    {
+        return bufStart + buf.position();
+    }
+
+    /**
+     * @return The number of bytes of the file read so far, compressed bytes for a gzip file; for showing progress against
+     * the length of the file
+     */
+    public long inputPosition()
+    {
+        return compressed == null ? position() : compressed.count;
+    }
+
+    /**
+     * Loads the next stretch of input into the buffer
+     * @return False at the end of the input
+     */
+    private boolean refill() throws IOException
+    {
+        bufStart += buf.limit();
+
+        if (channel != null)
+        {
+            long size = channel.size();
+
+            if (bufStart >= size)
+            {
+                buf.limit(0);
+                return false;
+            }
+
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, bufStart, Math.min(MAP_WINDOW, size - bufStart));
+            return true;
+        }
+
+        int n = stream.read(buf.array());
+
+        if (n <= 0)
+        {
+            buf.limit(0);
+            return false;
+        }
+
+        buf.position(0);
+        buf.limit(n);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+        if (stream != null)
+        {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Determines how often the output files of a job are flushed to disk
+ *
+ * Flushing more often means fewer records are lost if a job is killed, flushing less often means fewer system calls.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public enum FlushPolicy
+{
+    /**
+     * Flush after every record
+     */
+    RECORD,
+
+    /**
+     * Flush after every N records, N being the flush interval of the job
+     */
+    BATCH,
+
+    /**
+     * Flush only when the job is finished
+     */
+    END
+}
@@ -0,0 +1,436 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Gzip compression of output files on a thread of its own
+ *
+ * Each file opened here is written through a stream that only gathers bytes; once a megabyte has been gathered, or the
+ * stream is flushed with at least a quarter of that gathered, or the pipeline is synced, the bytes are queued for the
+ * compression thread, which writes them to the file as one gzip member. A flush with less gathered keeps the bytes, so
+ * flushing after every record still gives members large enough to compress well. The buffers are handed back by the
+ * compression thread once written and used again.
+ * A file is therefore a series of complete gzip members, which gzip, zcat and GZIPInputStream read as one stream, and which
+ * may be cut back to the end of any member, as a resumed job does, and still be read. The thread that writes the records
+ * only waits when the queue is full, so compression overlaps with the processing of the next records.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class GzipPipeline implements Closeable
+{
+
+    /**
+     * The most bytes gathered into one gzip member. Much larger than the 32 kilobyte window of deflate, so starting each
+     * member afresh costs little compression.
+     */
+    public static final int MEMBER_SIZE = 1 << 20;
+
+    /**
+     * The fewest bytes a flush ends a member with; a sync or close ends one with any
+     */
+    public static final int MIN_MEMBER_SIZE = MEMBER_SIZE / 4;
+
+    /**
+     * The number of members waiting to be compressed before writers are made to wait
+     */
+    private static final int QUEUE_LENGTH = 8;
+
+    /**
+     * The fixed header of every member: deflate, no name or time, unknown system
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * Bytes gathered for one member of one file
+     */
+    private static final class Member
+    {
+        final FileOutputStream file;
+
+        final byte[] data;
+
+        final int length;
+
+        Member(FileOutputStream file, byte[] data, int length)
+        {
+            this.file = file;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Queued after the last member, to stop the thread
+     */
+    private static final Member END = new Member(null, null, 0);
+
+    private final BlockingQueue<Member> queue = new ArrayBlockingQueue<>(QUEUE_LENGTH);
+
+    /**
+     * Buffers written out by the compression thread, ready to gather the next members
+     */
+    private final BlockingQueue<byte[]> spare = new ArrayBlockingQueue<>(QUEUE_LENGTH + 2);
+
+    private final Thread thread;
+
+    private final int level;
+
+    /**
+     * The files opened, closed with the pipeline
+     */
+    private final List<FileOutputStream> files = new ArrayList<>();
+
+    /**
+     * The streams writing to the files, whose members are ended on a sync
+     */
+    private final List<MemberStream> streams = new ArrayList<>();
+
+    /**
+     * The number of members queued and not yet written, guarded by this
+     */
+    private int pending;
+
+    /**
+     * The first failure of the compression thread, or null
+     */
+    private volatile IOException failure;
+
+    /**
+     * Starts the compression thread
+     * @param level The deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public GzipPipeline(int level)
+    {
+        this.level = level;
+
+        thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                compressLoop();
+            }
+        }, "protein2bioBrick-gzip");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens a file for compressed writing, in append mode, so a job ID that is reused adds members to its files
+     * @param file The file
+     * @return The stream to write to; closing it ends its member, while the file stays open until the pipeline is closed
+     * @throws IOException If the file cannot be opened
+     */
+    public OutputStream open(File file) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file, true);
+        files.add(out);
+
+        MemberStream stream = new MemberStream(out);
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Gathers the bytes of one file into members
+     */
+    private final class MemberStream extends OutputStream
+    {
+        private final FileOutputStream file;
+
+        private byte[] buffer;
+
+        private int count;
+
+        MemberStream(FileOutputStream file)
+        {
+            this.file = file;
+            buffer = buffer();
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (count == buffer.length)
+            {
+                endMember();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (count == buffer.length)
+                {
+                    endMember();
+                }
+
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Ends the member if enough has been gathered for it to compress well; otherwise keeps gathering
+         */
+        @Override
+        public void flush() throws IOException
+        {
+            if (count >= MIN_MEMBER_SIZE)
+            {
+                endMember();
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            endMember();
+        }
+
+        /**
+         * Queues the bytes gathered as one member. The bytes reach the file once the compression thread gets to them.
+         */
+        void endMember() throws IOException
+        {
+            if (count > 0)
+            {
+                submit(new Member(file, buffer, count));
+                buffer = buffer();
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * @return A buffer handed back by the compression thread, or a new one if none is waiting
+     */
+    private byte[] buffer()
+    {
+        byte[] res = spare.poll();
+        return res != null ? res : new byte[MEMBER_SIZE];
+    }
+
+    private void submit(Member member) throws IOException
+    {
+        checkFailure();
+
+        synchronized (this)
+        {
+            pending++;
+        }
+
+        try
+        {
+            queue.put(member);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing output for compression");
+        }
+    }
+
+    /**
+     * Ends the member of every file, waits until every member queued so far is in its file, then forces the files to disk
+     * @throws IOException If compression failed, or the files cannot be forced
+     */
+    public void sync() throws IOException
+    {
+        for (MemberStream stream : streams)
+        {
+            stream.endMember();
+        }
+
+        synchronized (this)
+        {
+            while (pending > 0 && thread.isAlive())
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for compressed output");
+                }
+            }
+        }
+
+        checkFailure();
+
+        for (FileOutputStream out : files)
+        {
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Writes out every member queued, stops the thread and closes the files
+     * @throws IOException The first failure of compression or of closing a file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        boolean interrupted = false;
+
+        try
+        {
+            while (thread.isAlive())
+            {
+                try
+                {
+                    queue.put(END);
+                    thread.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            for (FileOutputStream out : files)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException ex)
+                {
+                    if (failure == null)
+                    {
+                        failure = ex;
+                    }
+                }
+            }
+
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException
+    {
+        IOException ex = failure;
+
+        if (ex != null)
+        {
+            throw new IOException("Compressed output failed", ex);
+        }
+    }
+
+    /**
+     * Compresses and writes members until the end is queued. After a failure, members are still taken off the queue, so
+     * writers do not wait forever, but are dropped.
+     */
+    private void compressLoop()
+    {
+        Deflater deflater = new Deflater(level, true);
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MEMBER_SIZE / 2);
+        byte[] block = new byte[1 << 16];
+
+        try
+        {
+            while (true)
+            {
+                Member member;
+
+                try
+                {
+                    member = queue.take();
+                }
+                catch (InterruptedException ex)
+                {
+                    return;
+                }
+
+                if (member == END)
+                {
+                    return;
+                }
+
+                if (failure == null)
+                {
+                    try
+                    {
+                        deflater.reset();
+                        deflater.setInput(member.data, 0, member.length);
+                        deflater.finish();
+                        crc.reset();
+                        crc.update(member.data, 0, member.length);
+
+                        bytes.reset();
+                        bytes.write(HEADER);
+
+                        while (!deflater.finished())
+                        {
+                            bytes.write(block, 0, deflater.deflate(block));
+                        }
+
+                        writeIntLE(bytes, (int) crc.getValue());
+                        writeIntLE(bytes, member.length);
+                        bytes.writeTo(member.file);
+                    }
+                    catch (IOException ex)
+                    {
+                        failure = ex;
+                    }
+                }
+
+                spare.offer(member.data);
+
+                synchronized (this)
+                {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        }
+        finally
+        {
+            deflater.end();
+
+            synchronized (this)
+            {
+                notifyAll();
+            }
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value)
+    {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
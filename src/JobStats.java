@@ -0,0 +1,351 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+
+/**
+ * Statistics for a whole job
+ *
+ * Writes one row per record to protein2bioBrick_stats.csv as records are written, and sums the rows up, together with the
+ * time spent reading the input and writing the output, in protein2bioBrick_stats.json when the job is finished. Record
+ * latencies go into a log-linear histogram, so the percentiles are within about 3% however many records there are,
+ * in fixed memory.
+ *
+ * A resumed job keeps the rows of the records written before its checkpoint, drops any after it, and adds its own, so the
+ * CSV file and the record figures of the summary cover the whole job like the other output files. The time spent reading
+ * and writing, and the count of cached records, cover only the resumed run.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class JobStats implements Closeable
+{
+
+    /**
+     * Sub-buckets per power of two in the latency histogram
+     */
+    private static final int SUB_BITS = 4;
+
+    private final File dir;
+
+    private final FileOutputStream csvFile;
+
+    private final Writer csv;
+
+    /**
+     * Record counts by latency bucket
+     */
+    private final long[] histogram = new long[1024];
+
+    private long records;
+
+    private long cachedRecords;
+
+    private long translateNanos;
+
+    private long repeatNanos;
+
+    private long siteNanos;
+
+    private long verifyNanos;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    private long substitutions;
+
+    private long draws;
+
+    private long failSafes;
+
+    private long rejected;
+
+    /**
+     * The number of records written before the job was resumed, or 0
+     */
+    private final int resumedAfter;
+
+    /**
+     * Time spent reading records from the input
+     */
+    public long parseNanos;
+
+    /**
+     * Time spent writing records to the output files
+     */
+    public long writeNanos;
+
+    /**
+     * Opens the statistics of a job
+     * @param dir The job directory, wherein the files are written
+     * @param resumedAfter The number of records written before the job was resumed, whose rows are kept; 0 for a fresh start
+     * @throws IOException If the CSV file cannot be opened
+     */
+    public JobStats(File dir, int resumedAfter) throws IOException
+    {
+        this.dir = dir;
+        this.resumedAfter = resumedAfter;
+
+        File file = new File(dir, "protein2bioBrick_stats.csv");
+        boolean header = resumedAfter <= 0 || !file.isFile() || reload(file, resumedAfter) == 0;
+
+        csvFile = new FileOutputStream(file, !header);
+        csv = new BufferedWriter(new OutputStreamWriter(csvFile, StandardCharsets.UTF_8), OutputSink.BUFFER_SIZE);
+
+        if (header)
+        {
+            csv.write("record,length,translate_ns,repeat_ns,site_ns,verify_ns,total_ns,substitutions,draws,fail_safes,rejected");
+            csv.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Adds up the rows of the records written before a checkpoint, and cuts the CSV file back to just after them
+     * @param file The CSV file
+     * @param upTo The number of records written at the checkpoint
+     * @return The length the file is cut to; 0 if it does not even hold the header
+     * @throws IOException If the file cannot be read or cut
+     */
+    private long reload(File file, int upTo) throws IOException
+    {
+        long keep = 0;
+        long offset = 0;
+        StringBuilder line = new StringBuilder();
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file)))
+        {
+            int b;
+
+            while ((b = in.read()) >= 0)
+            {
+                offset++;
+
+                if (b != '\n')
+                {
+                    line.append((char) b);
+                    continue;
+                }
+
+                String[] parts = line.toString().trim().split(",");
+                line.setLength(0);
+
+                if (keep == 0)
+                {
+                    keep = offset;
+                    continue;
+                }
+
+                try
+                {
+                    if (parts.length != 11 || Integer.parseInt(parts[0]) > upTo)
+                    {
+                        break;
+                    }
+
+                    tally(Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5]),
+                            Long.parseLong(parts[6]), Long.parseLong(parts[7]), Long.parseLong(parts[8]), Long.parseLong(parts[9]),
+                            Long.parseLong(parts[10]));
+                }
+                catch (NumberFormatException ex)
+                {
+                    // A row torn by a crash; nothing after it is kept
+                    break;
+                }
+
+                keep = offset;
+            }
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(keep);
+        }
+
+        return keep;
+    }
+
+    /**
+     * Adds a record
+     * @param seqNumber The number of the record
+     * @param stats The statistics of the record
+     * @throws IOException If the CSV file cannot be written
+     */
+    public void add(int seqNumber, RecordStats stats) throws IOException
+    {
+        if (stats.cached)
+        {
+            cachedRecords++;
+        }
+        tally(stats.translateNanos, stats.repeatNanos, stats.siteNanos, stats.verifyNanos, stats.totalNanos,
+                stats.substitutions, stats.draws, stats.failSafes, stats.rejected);
+
+        csv.write(seqNumber + "," + stats.length + "," + stats.translateNanos + "," + stats.repeatNanos + ","
+                + stats.siteNanos + "," + stats.verifyNanos + "," + stats.totalNanos + "," + stats.substitutions + ","
+                + stats.draws + "," + stats.failSafes + "," + stats.rejected);
+        csv.write(System.lineSeparator());
+    }
+
+    private void tally(long translate, long repeat, long site, long verify, long total, long substitutions, long draws,
+                       long failSafes, long rejected)
+    {
+        records++;
+        translateNanos += translate;
+        repeatNanos += repeat;
+        siteNanos += site;
+        verifyNanos += verify;
+        totalNanos += total;
+        maxNanos = Math.max(maxNanos, total);
+        this.substitutions += substitutions;
+        this.draws += draws;
+        this.failSafes += failSafes;
+        this.rejected += rejected;
+        histogram[bucket(total)]++;
+    }
+
+    /**
+     * Flushes the CSV file and forces it to disk, so its rows are there for a checkpoint
+     * @throws IOException If the file cannot be flushed or forced
+     */
+    public void sync() throws IOException
+    {
+        csv.flush();
+        csvFile.getFD().sync();
+    }
+
+    /**
+     * Writes the summary and closes the CSV file
+     * @param jobNanos The running time of the whole job
+     * @throws IOException If either file cannot be written
+     */
+    public void finish(long jobNanos) throws IOException
+    {
+        csv.flush();
+
+        String n = System.lineSeparator();
+        StringBuilder json = new StringBuilder();
+
+        json.append("{").append(n);
+        json.append("  \"records\": ").append(records).append(",").append(n);
+        if (resumedAfter > 0)
+        {
+            json.append("  \"resumed_after\": ").append(resumedAfter).append(",").append(n);
+        }
+        json.append("  \"cached_records\": ").append(cachedRecords).append(",").append(n);
+        json.append("  \"job_ns\": ").append(jobNanos).append(",").append(n);
+        json.append("  \"stage_ns\": {").append(n);
+        json.append("    \"parse\": ").append(parseNanos).append(",").append(n);
+        json.append("    \"translate\": ").append(translateNanos).append(",").append(n);
+        json.append("    \"repeats\": ").append(repeatNanos).append(",").append(n);
+        json.append("    \"sites\": ").append(siteNanos).append(",").append(n);
+        json.append("    \"verify\": ").append(verifyNanos).append(",").append(n);
+        json.append("    \"records\": ").append(totalNanos).append(",").append(n);
+        json.append("    \"write\": ").append(writeNanos).append(n);
+        json.append("  },").append(n);
+        json.append("  \"substitutions\": ").append(substitutions).append(",").append(n);
+        json.append("  \"draws\": ").append(draws).append(",").append(n);
+        json.append("  \"fail_safes\": ").append(failSafes).append(",").append(n);
+        json.append("  \"rejected\": ").append(rejected).append(",").append(n);
+        json.append("  \"record_latency_ns\": {").append(n);
+        json.append("    \"mean\": ").append(records == 0 ? 0 : totalNanos / records).append(",").append(n);
+        json.append("    \"p50\": ").append(percentile(0.50)).append(",").append(n);
+        json.append("    \"p95\": ").append(percentile(0.95)).append(",").append(n);
+        json.append("    \"p99\": ").append(percentile(0.99)).append(",").append(n);
+        json.append("    \"max\": ").append(maxNanos).append(n);
+        json.append("  }").append(n);
+        json.append("}").append(n);
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, "protein2bioBrick_stats.json")), StandardCharsets.UTF_8)))
+        {
+            out.write(json.toString());
+        }
+    }
+
+    /**
+     * Closes the CSV file
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        csv.close();
+    }
+
+    /**
+     * @return A line summing up the statistics, for the job report
+     */
+    public String summary()
+    {
+        return String.format(Locale.ROOT, "Record latency p50 %.3f ms, p95 %.3f ms, p99 %.3f ms; %d codon substitutions, %d draws, %d fail safe events",
+                percentile(0.50) / 1e6, percentile(0.95) / 1e6, percentile(0.99) / 1e6, substitutions, draws, failSafes);
+    }
+
+    /**
+     * Finds the latency below which a share of the records fall, from the histogram
+     * @param share The share, from 0 to 1
+     * @return The latency in nanoseconds, at the middle of its bucket
+     */
+    private long percentile(double share)
+    {
+        if (records == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(share * records));
+        long seen = 0;
+
+        for (int i = 0; i < histogram.length; i++)
+        {
+            seen += histogram[i];
+
+            if (seen >= rank)
+            {
+                return Math.min(maxNanos, middle(i));
+            }
+        }
+
+        return maxNanos;
+    }
+
+    /**
+     * Values below 32 get a bucket each; above, every power of two is split into 16 buckets
+     */
+    private static int bucket(long nanos)
+    {
+        if (nanos < 2 << SUB_BITS)
+        {
+            return (int) Math.max(0, nanos);
+        }
+
+        int e = 63 - Long.numberOfLeadingZeros(nanos);
+        return (e - SUB_BITS) * (1 << SUB_BITS) + (int) (nanos >>> (e - SUB_BITS));
+    }
+
+    private static long middle(int bucket)
+    {
+        if (bucket < 2 << SUB_BITS)
+        {
+            return bucket;
+        }
+
+        int e = bucket / (1 << SUB_BITS) + SUB_BITS - 1;
+        long top = (bucket % (1 << SUB_BITS)) + (1 << SUB_BITS);
+        long width = 1L << (e - SUB_BITS);
+
+        return top * width + width / 2;
+    }
+}
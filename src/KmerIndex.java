@@ -0,0 +1,342 @@
+import java.util.Arrays;
+
+
+/**
+ * Index of the k-mers of a nucleotide sequence, for the repeat check
+ *
+ * Each k-mer is packed two bits per base into a long, computed with a rolling window, and every position is linked to the
+ * next position holding the same k-mer. Finding the next copy of the k-mer at a position is then a single lookup, and
+ * replacing a codon only re-links the k positions that overlap it. Positions are dropped from the index as the repeat
+ * check moves past them, so it only ever holds the part of the sequence still to be checked.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+final class KmerIndex
+{
+
+    /**
+     * The longest k-mer that fits two bits per base in a long
+     */
+    static final int MAX_K = 31;
+
+    private static final long EMPTY = -1L;
+
+    private final int k;
+
+    private final long mask;
+
+    /**
+     * The packed k-mer starting at each position, or EMPTY if it holds a letter other than a, c, g or t
+     */
+    private final long[] keyAt;
+
+    /**
+     * The next and previous position holding the same k-mer, or -1
+     */
+    private final int[] nxt;
+
+    private final int[] prv;
+
+    /**
+     * True for positions still in the index
+     */
+    private final boolean[] active;
+
+    /**
+     * Open addressing table from packed k-mer to the first position holding it
+     */
+    private long[] tableKeys;
+
+    private int[] tableHeads;
+
+    private int tableUsed = 0;
+
+    /**
+     * Indexes every k-mer of a sequence
+     * @param seq The nucleotide sequence
+     * @param k The length of the k-mers, from 1 to {@link #MAX_K}
+     */
+    KmerIndex(NucleotideBuffer seq, int k)
+    {
+        if (k < 1 || k > MAX_K)
+        {
+            throw new IllegalArgumentException("Repeat length must be from 1 to " + MAX_K + ", not " + k);
+        }
+
+        this.k = k;
+        this.mask = (1L << (2 * k)) - 1;
+
+        int positions = Math.max(0, seq.length() - k + 1);
+
+        keyAt = new long[positions];
+        nxt = new int[positions];
+        prv = new int[positions];
+        active = new boolean[positions];
+
+        int capacity = Integer.highestOneBit(Math.max(16, positions * 2 - 1)) << 1;
+        tableKeys = new long[capacity];
+        tableHeads = new int[capacity];
+        Arrays.fill(tableKeys, EMPTY);
+
+        long key = 0;
+        int valid = 0;
+
+        // Rolling window: shift in one base at a time, counting bases since the last unknown letter
+        for (int i = 0; i < seq.length(); i++)
+        {
+            int base = seq.code(i);
+
+            if (base == NucleotideBuffer.UNKNOWN)
+            {
+                valid = 0;
+                key = 0;
+            }
+            else
+            {
+                key = ((key << 2) | base) & mask;
+                valid++;
+            }
+
+            int p = i - k + 1;
+
+            if (p >= 0)
+            {
+                keyAt[p] = valid >= k ? key : EMPTY;
+            }
+        }
+
+        // Link from the back, so every chain comes out in increasing order
+        for (int p = positions - 1; p >= 0; p--)
+        {
+            active[p] = true;
+            prv[p] = -1;
+            nxt[p] = -1;
+
+            if (keyAt[p] != EMPTY)
+            {
+                int slot = slot(keyAt[p]);
+                int head = tableHeads[slot];
+
+                nxt[p] = head;
+                if (head >= 0)
+                {
+                    prv[head] = p;
+                }
+                tableHeads[slot] = p;
+            }
+        }
+    }
+
+    /**
+     * @return The length of the k-mers
+     */
+    int k()
+    {
+        return k;
+    }
+
+    /**
+     * Finds the next copy of the k-mer at a position, then drops the position from the index.
+     * Positions must be passed in increasing order, as the repeat check does.
+     * @param p The position
+     * @return The first later position holding the same k-mer, or -1
+     */
+    int advance(int p)
+    {
+        if (p >= active.length || !active[p])
+        {
+            return -1;
+        }
+
+        int res = keyAt[p] == EMPTY ? -1 : nxt[p];
+        unlink(p);
+        active[p] = false;
+        return res;
+    }
+
+    /**
+     * Finds another copy of the k-mer at a position, without dropping anything from the index
+     * @param p The position
+     * @return A position still in the index holding the same k-mer, or -1
+     */
+    int other(int p)
+    {
+        if (p < 0 || p >= active.length || !active[p] || keyAt[p] == EMPTY)
+        {
+            return -1;
+        }
+
+        return nxt[p] >= 0 ? nxt[p] : prv[p];
+    }
+
+    /**
+     * Re-indexes the k-mers that overlap a changed stretch of the sequence
+     * @param seq The sequence after the change
+     * @param start The first changed position
+     * @param end The position after the last changed position
+     */
+    void update(NucleotideBuffer seq, int start, int end)
+    {
+        int first = Math.max(0, start - k + 1);
+        int last = Math.min(active.length - 1, end - 1);
+
+        for (int p = first; p <= last; p++)
+        {
+            if (!active[p])
+            {
+                continue;
+            }
+
+            long key = pack(seq, p);
+
+            if (key == keyAt[p])
+            {
+                continue;
+            }
+
+            unlink(p);
+            keyAt[p] = key;
+            link(p);
+        }
+    }
+
+    private long pack(NucleotideBuffer seq, int p)
+    {
+        long key = 0;
+
+        for (int i = p; i < p + k; i++)
+        {
+            int base = seq.code(i);
+
+            if (base == NucleotideBuffer.UNKNOWN)
+            {
+                return EMPTY;
+            }
+            key = (key << 2) | base;
+        }
+
+        return key;
+    }
+
+    private void unlink(int p)
+    {
+        if (keyAt[p] == EMPTY)
+        {
+            return;
+        }
+
+        if (prv[p] >= 0)
+        {
+            nxt[prv[p]] = nxt[p];
+        }
+        else
+        {
+            tableHeads[slot(keyAt[p])] = nxt[p];
+        }
+
+        if (nxt[p] >= 0)
+        {
+            prv[nxt[p]] = prv[p];
+        }
+
+        prv[p] = -1;
+        nxt[p] = -1;
+    }
+
+    /**
+     * Links a position into the chain of its k-mer, keeping the chain in increasing order
+     */
+    private void link(int p)
+    {
+        if (keyAt[p] == EMPTY)
+        {
+            return;
+        }
+
+        int slot = slot(keyAt[p]);
+        int before = -1;
+        int after = tableHeads[slot];
+
+        while (after >= 0 && after < p)
+        {
+            before = after;
+            after = nxt[after];
+        }
+
+        prv[p] = before;
+        nxt[p] = after;
+
+        if (before >= 0)
+        {
+            nxt[before] = p;
+        }
+        else
+        {
+            tableHeads[slot] = p;
+        }
+
+        if (after >= 0)
+        {
+            prv[after] = p;
+        }
+    }
+
+    /**
+     * Finds the table slot of a k-mer, claiming an empty one if the k-mer is new
+     */
+    private int slot(long key)
+    {
+        int m = tableKeys.length - 1;
+        int i = (int) mix(key) & m;
+
+        while (tableKeys[i] != EMPTY && tableKeys[i] != key)
+        {
+            i = (i + 1) & m;
+        }
+
+        if (tableKeys[i] == EMPTY)
+        {
+            if ((tableUsed + 1) * 4 > tableKeys.length * 3)
+            {
+                grow();
+                return slot(key);
+            }
+
+            tableKeys[i] = key;
+            tableHeads[i] = -1;
+            tableUsed++;
+        }
+
+        return i;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = tableKeys;
+        int[] oldHeads = tableHeads;
+
+        tableKeys = new long[oldKeys.length * 2];
+        tableHeads = new int[oldKeys.length * 2];
+        Arrays.fill(tableKeys, EMPTY);
+        tableUsed = 0;
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int s = slot(oldKeys[i]);
+                tableHeads[s] = oldHeads[i];
+            }
+        }
+    }
+
+    private static long mix(long key)
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+}
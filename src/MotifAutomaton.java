@@ -0,0 +1,563 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+
+/**
+ * Aho-Corasick automaton over a set of nucleotide motifs
+ *
+ * Built once from the restriction enzyme patterns of an assembly standard, it finds a site of any of the enzymes in a single
+ * pass over the sequence, instead of one indexOf per enzyme. Motifs may hold IUPAC degenerate letters, such as N or W: each
+ * letter is taken as a mask of the bases it stands for, and the trie branches on every base of the mask, so a degenerate
+ * site costs states when built but nothing extra when scanning. The automaton is immutable and may be shared between threads,
+ * and is kept with the compiled {@link AssemblyStandard} it belongs to.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class MotifAutomaton implements SiteScanner
+{
+
+    /**
+     * The motifs searched for, lower case
+     */
+    private final String[] motifs;
+
+    /**
+     * Transitions, four per state in the order a, c, g, t. Failure links are already folded in.
+     */
+    private final int[] next;
+
+    /**
+     * For each state, a motif that ends there (its own, or one reached by failure links), or -1
+     */
+    private final int[] match;
+
+    /**
+     * For each state, the motif spelled out by the state itself, or -1
+     */
+    private final int[] own;
+
+    /**
+     * For each state, the nearest state along the failure links that spells out a motif, or 0
+     */
+    private final int[] output;
+
+    /**
+     * For each state, every motif spelled out by the state itself, or null. Degenerate motifs may spell out the same bases.
+     */
+    private final int[][] spelledBy;
+
+    /**
+     * Length of the longest motif
+     */
+    private final int maxLength;
+
+    /**
+     * The most states a set of motifs may expand to, so a badly degenerate site fails plainly instead of using up memory
+     */
+    private static final long MAX_STATES = 1 << 20;
+
+    /**
+     * Builds the automaton
+     * @param motifs The recognition patterns, made of the letters a, c, g and t or the IUPAC degenerate letters. Empty
+     * patterns are ignored.
+     */
+    public MotifAutomaton(String[] motifs)
+    {
+        this.motifs = motifs.clone();
+
+        long size = 1;
+        int longest = 0;
+
+        for (String motif : motifs)
+        {
+            // A prefix of a degenerate motif needs a state for every sequence it stands for
+            long spread = 1;
+
+            for (int i = 0; i < motif.length(); i++)
+            {
+                int mask = mask(motif.charAt(i));
+
+                if (mask == 0)
+                {
+                    throw new IllegalArgumentException("Motif " + motif + " holds a letter other than a nucleotide or an IUPAC code");
+                }
+
+                spread *= Integer.bitCount(mask);
+                size += spread;
+
+                if (size > MAX_STATES)
+                {
+                    throw new IllegalArgumentException("Motifs are too degenerate to search for, at " + motif);
+                }
+            }
+
+            longest = Math.max(longest, motif.length());
+        }
+
+        maxLength = longest;
+
+        int[] trie = new int[(int) size * 4];
+        int[] spelled = new int[(int) size];
+        int[][] spelledAll = new int[(int) size][];
+        Arrays.fill(trie, -1);
+        Arrays.fill(spelled, -1);
+
+        int states = 1;
+
+        // Build the trie, following every base a degenerate letter allows
+        for (int m = 0; m < motifs.length; m++)
+        {
+            String motif = motifs[m];
+            int[] reached = {0};
+
+            for (int i = 0; i < motif.length(); i++)
+            {
+                int mask = mask(motif.charAt(i));
+                int[] after = new int[reached.length * Integer.bitCount(mask)];
+                int count = 0;
+
+                for (int state : reached)
+                {
+                    for (int base = 0; base < 4; base++)
+                    {
+                        if ((mask & (1 << base)) == 0)
+                        {
+                            continue;
+                        }
+
+                        if (trie[state * 4 + base] < 0)
+                        {
+                            trie[state * 4 + base] = states++;
+                        }
+
+                        after[count++] = trie[state * 4 + base];
+                    }
+                }
+
+                reached = after;
+            }
+
+            if (motif.length() == 0)
+            {
+                continue;
+            }
+
+            // Every motif ending on a state has the same length, the depth of the state
+            for (int state : reached)
+            {
+                if (spelled[state] < 0)
+                {
+                    spelled[state] = m;
+                    spelledAll[state] = new int[] {m};
+                }
+                else
+                {
+                    spelledAll[state] = Arrays.copyOf(spelledAll[state], spelledAll[state].length + 1);
+                    spelledAll[state][spelledAll[state].length - 1] = m;
+                }
+            }
+        }
+
+        next = new int[states * 4];
+        match = Arrays.copyOf(spelled, states);
+        own = Arrays.copyOf(spelled, states);
+        spelledBy = Arrays.copyOf(spelledAll, states);
+        output = new int[states];
+
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int base = 0; base < 4; base++)
+        {
+            int child = trie[base];
+
+            if (child < 0)
+            {
+                next[base] = 0;
+            }
+            else
+            {
+                next[base] = child;
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+
+        // Breadth first, so failure targets are always finished before they are used
+        while (!queue.isEmpty())
+        {
+            int state = queue.poll();
+
+            if (match[state] < 0)
+            {
+                match[state] = match[fail[state]];
+            }
+
+            output[state] = own[fail[state]] >= 0 ? fail[state] : output[fail[state]];
+
+            for (int base = 0; base < 4; base++)
+            {
+                int child = trie[state * 4 + base];
+
+                if (child < 0)
+                {
+                    next[state * 4 + base] = next[fail[state] * 4 + base];
+                }
+                else
+                {
+                    next[state * 4 + base] = child;
+                    fail[child] = next[fail[state] * 4 + base];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private MotifAutomaton(String[] motifs, int[] next, int[] match, int[] own, int[] output, int[][] spelledBy, int maxLength)
+    {
+        this.motifs = motifs;
+        this.next = next;
+        this.match = match;
+        this.own = own;
+        this.output = output;
+        this.spelledBy = spelledBy;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Writes the automaton, for {@link #read(ByteBuffer)}
+     * @param out The stream written to
+     * @throws IOException If the stream cannot be written
+     */
+    void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(motifs.length);
+
+        for (String motif : motifs)
+        {
+            AssemblyStandard.writeString(out, motif);
+        }
+
+        AssemblyStandard.writeInts(out, next);
+        AssemblyStandard.writeInts(out, match);
+        AssemblyStandard.writeInts(out, own);
+        AssemblyStandard.writeInts(out, output);
+
+        for (int[] spelled : spelledBy)
+        {
+            AssemblyStandard.writeInts(out, spelled == null ? new int[0] : spelled);
+        }
+    }
+
+    /**
+     * Reads an automaton written by {@link #write(DataOutputStream)}. The values are not checked one by one; the profile file
+     * they are read from carries a checksum instead.
+     * @param in The buffer read from
+     * @return The automaton
+     * @throws IOException If the arrays do not fit together
+     */
+    static MotifAutomaton read(ByteBuffer in) throws IOException
+    {
+        String[] motifs = new String[AssemblyStandard.readLength(in, 4)];
+        int longest = 0;
+
+        for (int m = 0; m < motifs.length; m++)
+        {
+            motifs[m] = AssemblyStandard.readString(in);
+            longest = Math.max(longest, motifs[m].length());
+        }
+
+        int[] next = AssemblyStandard.readInts(in);
+        int states = next.length / 4;
+        int[] match = AssemblyStandard.readInts(in);
+        int[] own = AssemblyStandard.readInts(in);
+        int[] output = AssemblyStandard.readInts(in);
+        int[][] spelledBy = new int[states][];
+
+        boolean intact = states > 0 && next.length == states * 4 && match.length == states && own.length == states && output.length == states;
+
+        for (int s = 0; intact && s < states; s++)
+        {
+            int[] spelled = AssemblyStandard.readInts(in);
+
+            spelledBy[s] = spelled.length == 0 ? null : spelled;
+            intact = (spelled.length == 0) == (own[s] < 0);
+        }
+
+        if (!intact)
+        {
+            throw new IOException("Damaged site automaton");
+        }
+
+        return new MotifAutomaton(motifs, next, match, own, output, spelledBy, longest);
+    }
+
+    /**
+     * Codes a nucleotide as 0 to 3
+     * @param c The nucleotide, upper or lower case
+     * @return The code, or -1 for anything other than a, c, g or t
+     */
+    static int code(char c)
+    {
+        switch (c)
+        {
+            case 'a':
+            case 'A':
+                return 0;
+            case 'c':
+            case 'C':
+                return 1;
+            case 'g':
+            case 'G':
+                return 2;
+            case 't':
+            case 'T':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Codes a nucleotide or an IUPAC degenerate letter as a mask of the bases it stands for: 1 for a, 2 for c, 4 for g and
+     * 8 for t
+     * @param c The letter, upper or lower case
+     * @return The mask, or 0 for a letter that is not a nucleotide code
+     */
+    static int mask(char c)
+    {
+        switch (Character.toUpperCase(c))
+        {
+            case 'A':
+                return 1;
+            case 'C':
+                return 2;
+            case 'G':
+                return 4;
+            case 'T':
+                return 8;
+            case 'R':
+                return 1 | 4;
+            case 'Y':
+                return 2 | 8;
+            case 'S':
+                return 2 | 4;
+            case 'W':
+                return 1 | 8;
+            case 'K':
+                return 4 | 8;
+            case 'M':
+                return 1 | 2;
+            case 'B':
+                return 2 | 4 | 8;
+            case 'D':
+                return 1 | 4 | 8;
+            case 'H':
+                return 1 | 2 | 8;
+            case 'V':
+                return 1 | 2 | 4;
+            case 'N':
+                return 1 | 2 | 4 | 8;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Finds the site that ends first, among sites starting at or after a position
+     * @param seq The nucleotide sequence
+     * @param from The first position a site may start at
+     * @param minEnd Sites ending before this position are passed over
+     * @param hit Receives the number of the motif found in its first element
+     * @return The start of the site, or -1 if there is none
+     */
+    public int find(CharSequence seq, int from, int minEnd, int[] hit)
+    {
+        int state = 0;
+        int length = seq.length();
+
+        for (int i = Math.max(0, from); i < length; i++)
+        {
+            int base = code(seq.charAt(i));
+
+            if (base < 0)
+            {
+                state = 0;
+                continue;
+            }
+
+            state = next[state * 4 + base];
+
+            int m = match[state];
+
+            if (m >= 0 && i >= minEnd)
+            {
+                hit[0] = m;
+                return i - motifs[m].length() + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the site that ends first, among sites starting at or after a position and ending before another. Reads the base
+     * codes directly.
+     * @param seq The nucleotide sequence
+     * @param from The first position a site may start at
+     * @param minEnd Sites ending before this position are passed over
+     * @param endBefore The scan stops here; only sites whose last base lies before it are found
+     * @param hit Receives the number of the motif found in its first element
+     * @return The start of the site, or -1 if there is none
+     */
+    @Override
+    public int find(NucleotideBuffer seq, int from, int minEnd, int endBefore, int[] hit)
+    {
+        int state = 0;
+        int length = Math.min(seq.length(), endBefore);
+
+        for (int i = Math.max(0, from); i < length; i++)
+        {
+            int base = seq.code(i);
+
+            if (base == NucleotideBuffer.UNKNOWN)
+            {
+                state = 0;
+                continue;
+            }
+
+            state = next[state * 4 + base];
+
+            int m = match[state];
+
+            if (m >= 0 && i >= minEnd)
+            {
+                hit[0] = m;
+                return i - motifs[m].length() + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the site that ends first, among sites starting at or after a position. Reads the base codes directly.
+     * @param seq The nucleotide sequence
+     * @param from The first position a site may start at
+     * @param minEnd Sites ending before this position are passed over
+     * @param hit Receives the number of the motif found in its first element
+     * @return The start of the site, or -1 if there is none
+     */
+    public int find(NucleotideBuffer seq, int from, int minEnd, int[] hit)
+    {
+        return find(seq, from, minEnd, seq.length(), hit);
+    }
+
+    /**
+     * Finds which motifs occur anywhere in a sequence, in a single pass
+     * @param seq The nucleotide sequence
+     * @return True for each motif found, by motif number
+     */
+    @Override
+    public boolean[] present(NucleotideBuffer seq)
+    {
+        boolean[] res = new boolean[motifs.length];
+        int state = 0;
+
+        for (int i = 0; i < seq.length(); i++)
+        {
+            int base = seq.code(i);
+
+            if (base == NucleotideBuffer.UNKNOWN)
+            {
+                state = 0;
+                continue;
+            }
+
+            state = next[state * 4 + base];
+
+            // Every motif ending here is spelled out by this state or one along its output links
+            for (int s = own[state] >= 0 ? state : output[state]; s > 0; s = output[s])
+            {
+                for (int m : spelledBy[s])
+                {
+                    res[m] = true;
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Finds the site that ends first, among sites starting at or after a position
+     * @param seq The nucleotide sequence
+     * @param from The first position a site may start at
+     * @param hit Receives the number of the motif found in its first element
+     * @return The start of the site, or -1 if there is none
+     */
+    public int find(CharSequence seq, int from, int[] hit)
+    {
+        return find(seq, from, 0, hit);
+    }
+
+    /**
+     * @return The number of states of the automaton. State 0 is the start, where nothing has been matched.
+     */
+    public int stateCount()
+    {
+        return match.length;
+    }
+
+    /**
+     * Moves the automaton on by one base
+     * @param state The current state
+     * @param base The code of the base, from 0 to 3
+     * @return The next state
+     */
+    public int step(int state, int base)
+    {
+        return next[state * 4 + base];
+    }
+
+    /**
+     * @param state A state
+     * @return The number of a motif that ends on reaching the state, or -1 if none does
+     */
+    public int matchAt(int state)
+    {
+        return match[state];
+    }
+
+    /**
+     * @param m The number of a motif
+     * @return The motif
+     */
+    public String motif(int m)
+    {
+        return motifs[m];
+    }
+
+    /**
+     * @return The number of motifs
+     */
+    public int motifCount()
+    {
+        return motifs.length;
+    }
+
+    /**
+     * @return The length of the longest motif
+     */
+    public int maxLength()
+    {
+        return maxLength;
+    }
+}
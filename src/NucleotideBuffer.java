@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+
+/**
+ * A mutable nucleotide sequence, one byte per base
+ *
+ * Bases are held as codes 0 to 3 for a, c, g and t, and 4 for anything else (shown as n). Replacing a codon changes three
+ * bytes in place, where rebuilding a String would copy the whole sequence; a String is only made when the sequence or part
+ * of it is written out.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class NucleotideBuffer implements CharSequence
+{
+
+    /**
+     * Code for a base other than a, c, g or t
+     */
+    public static final byte UNKNOWN = 4;
+
+    private static final char[] LETTERS = {'a', 'c', 'g', 't', 'n'};
+
+    private final byte[] bases;
+
+    /**
+     * Creates a sequence of unknown bases
+     * @param length The number of bases
+     */
+    public NucleotideBuffer(int length)
+    {
+        bases = new byte[length];
+        Arrays.fill(bases, UNKNOWN);
+    }
+
+    /**
+     * Creates a sequence holding the bases of a string
+     * @param seq The nucleotide sequence
+     */
+    public NucleotideBuffer(CharSequence seq)
+    {
+        bases = new byte[seq.length()];
+
+        for (int i = 0; i < bases.length; i++)
+        {
+            bases[i] = encode(seq.charAt(i));
+        }
+    }
+
+    private NucleotideBuffer(byte[] bases)
+    {
+        this.bases = bases;
+    }
+
+    /**
+     * @return An independent copy of this sequence
+     */
+    public NucleotideBuffer copy()
+    {
+        return new NucleotideBuffer(bases.clone());
+    }
+
+    /**
+     * @param c A nucleotide, upper or lower case
+     * @return Its code, from 0 to 3, or {@link #UNKNOWN}
+     */
+    public static byte encode(char c)
+    {
+        int code = MotifAutomaton.code(c);
+        return code < 0 ? UNKNOWN : (byte) code;
+    }
+
+    /**
+     * @param i A position in the sequence
+     * @return The code of the base at the position
+     */
+    public byte code(int i)
+    {
+        return bases[i];
+    }
+
+    /**
+     * @return The base codes themselves, not a copy, for scanners that read many at once. They must not be changed.
+     */
+    byte[] codes()
+    {
+        return bases;
+    }
+
+    /**
+     * Replaces the codon at a position
+     * @param pos The position of the first base of the codon
+     * @param codon The new codon, three letters
+     */
+    public void setCodon(int pos, CharSequence codon)
+    {
+        bases[pos] = encode(codon.charAt(0));
+        bases[pos + 1] = encode(codon.charAt(1));
+        bases[pos + 2] = encode(codon.charAt(2));
+    }
+
+    /**
+     * Replaces the codon at a position
+     * @param pos The position of the first base of the codon
+     * @param codon The new codon number, as packed by {@link CodonTable}, or {@link CodonTable#NO_CODON} for nnn
+     */
+    public void setCodon(int pos, int codon)
+    {
+        if (codon == CodonTable.NO_CODON)
+        {
+            bases[pos] = UNKNOWN;
+            bases[pos + 1] = UNKNOWN;
+            bases[pos + 2] = UNKNOWN;
+            return;
+        }
+
+        bases[pos] = (byte) (codon >> 4);
+        bases[pos + 1] = (byte) ((codon >> 2) & 3);
+        bases[pos + 2] = (byte) (codon & 3);
+    }
+
+    /**
+     * Replaces a stretch with the bases of another sequence
+     * @param pos The position of the first base replaced
+     * @param src The sequence holding the new bases
+     * @param from The first position copied from it
+     * @param to The position after the last
+     */
+    public void put(int pos, NucleotideBuffer src, int from, int to)
+    {
+        System.arraycopy(src.bases, from, bases, pos, to - from);
+    }
+
+    /**
+     * @param pos The position of the first base of the codon
+     * @return The codon number, as packed by {@link CodonTable}, or {@link CodonTable#NO_CODON} if it holds an unknown base
+     */
+    public int codonIndex(int pos)
+    {
+        int a = bases[pos];
+        int b = bases[pos + 1];
+        int c = bases[pos + 2];
+
+        if (a == UNKNOWN || b == UNKNOWN || c == UNKNOWN)
+        {
+            return CodonTable.NO_CODON;
+        }
+
+        return (a << 4) | (b << 2) | c;
+    }
+
+    /**
+     * @param pos The position of the first base of the codon
+     * @return The codon at the position
+     */
+    public String codon(int pos)
+    {
+        return substring(pos, pos + 3);
+    }
+
+    /**
+     * @param start The first position
+     * @param end The position after the last
+     * @return The bases between two positions, as a String
+     */
+    public String substring(int start, int end)
+    {
+        char[] res = new char[end - start];
+
+        for (int i = start; i < end; i++)
+        {
+            res[i - start] = LETTERS[bases[i]];
+        }
+
+        return new String(res);
+    }
+
+    @Override
+    public int length()
+    {
+        return bases.length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return LETTERS[bases[index]];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return substring(start, end);
+    }
+
+    @Override
+    public String toString()
+    {
+        return substring(0, bases.length);
+    }
+}
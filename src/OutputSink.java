@@ -0,0 +1,384 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+
+/**
+ * The output files of one job
+ *
+ * Keeps the result, report and back translation files open for the length of the job behind large buffers, rather than
+ * reopening a file for every line written. Files are written in UTF-8, whatever the default charset of the JVM, and are
+ * opened in append mode, so a job ID that is reused adds to its files as before.
+ * The files may also be written gzip compressed, with the compression done on a thread of its own by a {@link GzipPipeline}.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class OutputSink implements Closeable
+{
+
+    /**
+     * Size of the buffer kept for each file, in characters
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    public static final String RESULT_NAME = "protein2bioBrick_result.txt";
+
+    public static final String REPORT_NAME = "protein2bioBrick_report.txt";
+
+    public static final String BACKTRANS_NAME = "protein2bioBrick_backtrans.txt";
+
+    /**
+     * Added to the name of every file written compressed
+     */
+    public static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * The deflate level of compressed files. DNA and reports are made of few letters, so the fastest level already shrinks
+     * them well.
+     */
+    public static final int GZIP_LEVEL = Deflater.BEST_SPEED;
+
+    /**
+     * File to which results will be written during run.
+     */
+    private final Writer result;
+
+    /**
+     * File to which runtime information is written.
+     */
+    private final Writer report;
+
+    /**
+     * File to which back translation check is written.
+     */
+    private final Writer backtrans;
+
+    /**
+     * File to which the events of a structured report are written, or null if there is none
+     */
+    private final Writer events;
+
+    private final FlushPolicy flushPolicy;
+
+    private final int flushInterval;
+
+    /**
+     * Number of records finished since the last flush
+     */
+    private int pending = 0;
+
+    /**
+     * The streams under the writers, kept so the files can be forced to disk
+     */
+    private final List<FileOutputStream> streams = new ArrayList<>();
+
+    /**
+     * Compresses the files, or null when they are written as they are
+     */
+    private final GzipPipeline gzip;
+
+    /**
+     * Opens the output files of a job
+     * @param dir The job directory, wherein files are written
+     * @param flushPolicy How often the files are flushed
+     * @param flushInterval The number of records between flushes, used with {@link FlushPolicy#BATCH}
+     * @throws IOException If one of the files cannot be opened
+     */
+    public OutputSink(File dir, FlushPolicy flushPolicy, int flushInterval) throws IOException
+    {
+        this(dir, flushPolicy, flushInterval, null);
+    }
+
+    /**
+     * Opens the output files of a job, together with an events stream
+     * @param dir The job directory, wherein files are written
+     * @param flushPolicy How often the files are flushed
+     * @param flushInterval The number of records between flushes, used with {@link FlushPolicy#BATCH}
+     * @param eventsName The name of the events file, or null for none
+     * @throws IOException If one of the files cannot be opened
+     */
+    public OutputSink(File dir, FlushPolicy flushPolicy, int flushInterval, String eventsName) throws IOException
+    {
+        this(dir, flushPolicy, flushInterval, eventsName, false);
+    }
+
+    /**
+     * Opens the output files of a job, together with an events stream, optionally gzip compressed. A gzip member is ended
+     * by a flush only once {@link GzipPipeline#MIN_MEMBER_SIZE} bytes have been gathered, and by every sync, so flushing
+     * after every record keeps the files about as small as one member would.
+     * @param dir The job directory, wherein files are written
+     * @param flushPolicy How often the files are flushed
+     * @param flushInterval The number of records between flushes, used with {@link FlushPolicy#BATCH}
+     * @param eventsName The name of the events file, or null for none, without the gzip suffix
+     * @param compress True to write every file gzip compressed, with {@link #GZIP_SUFFIX} added to its name
+     * @throws IOException If one of the files cannot be opened
+     */
+    public OutputSink(File dir, FlushPolicy flushPolicy, int flushInterval, String eventsName, boolean compress) throws IOException
+    {
+        this.flushPolicy = flushPolicy;
+        this.flushInterval = Math.max(1, flushInterval);
+
+        gzip = compress ? new GzipPipeline(GZIP_LEVEL) : null;
+
+        Writer openedResult;
+
+        try
+        {
+            openedResult = open(new File(dir, fileName(RESULT_NAME, compress)));
+        }
+        catch (IOException ex)
+        {
+            closePipeline();
+            throw ex;
+        }
+
+        result = openedResult;
+
+        Writer opened = null;
+        Writer openedBacktrans = null;
+
+        try
+        {
+            opened = open(new File(dir, fileName(REPORT_NAME, compress)));
+            report = opened;
+            openedBacktrans = open(new File(dir, fileName(BACKTRANS_NAME, compress)));
+            backtrans = openedBacktrans;
+            events = eventsName == null ? null : open(new File(dir, fileName(eventsName, compress)));
+        }
+        catch (IOException ex)
+        {
+            if (openedBacktrans != null)
+            {
+                openedBacktrans.close();
+            }
+            if (opened != null)
+            {
+                opened.close();
+            }
+            result.close();
+            closePipeline();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param name The name of an output file
+     * @param compress True if the file is written compressed
+     * @return The name the file is written under
+     */
+    public static String fileName(String name, boolean compress)
+    {
+        return compress ? name + GZIP_SUFFIX : name;
+    }
+
+    private Writer open(File file) throws IOException
+    {
+        if (gzip != null)
+        {
+            return new BufferedWriter(new OutputStreamWriter(gzip.open(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        streams.add(out);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes a line to the result file
+     * @param content The string to be written
+     * @throws IOException If the file cannot be written
+     */
+    public void result(String content) throws IOException
+    {
+        writeLine(content, result);
+    }
+
+    /**
+     * Writes a line to the report file
+     * @param content The string to be written
+     * @throws IOException If the file cannot be written
+     */
+    public void report(String content) throws IOException
+    {
+        writeLine(content, report);
+    }
+
+    /**
+     * Writes a line to the back translation file
+     * @param content The string to be written
+     * @throws IOException If the file cannot be written
+     */
+    public void backtrans(String content) throws IOException
+    {
+        writeLine(content, backtrans);
+    }
+
+    /**
+     * Writes a line to the events file, if there is one
+     * @param content The string to be written
+     * @throws IOException If the file cannot be written
+     */
+    public void events(String content) throws IOException
+    {
+        if (events != null)
+        {
+            writeLine(content, events);
+        }
+    }
+
+    /**
+     * Writes everything produced for one record, then marks the end of the record
+     * @param record The output of the record
+     * @throws IOException If the files cannot be written
+     */
+    public void write(RecordOutput record) throws IOException
+    {
+        result.append(record.result);
+        report.append(record.report);
+        backtrans.append(record.backtrans);
+
+        if (events != null)
+        {
+            events.append(record.events);
+        }
+
+        endRecord();
+    }
+
+    private static void writeLine(String content, Writer writer) throws IOException
+    {
+        writer.write(content);
+        writer.write(System.lineSeparator());
+    }
+
+    /**
+     * Marks the end of a record, flushing the files if the flush policy asks for it
+     * @throws IOException If the files cannot be flushed
+     */
+    public void endRecord() throws IOException
+    {
+        pending++;
+
+        if (flushPolicy == FlushPolicy.RECORD || (flushPolicy == FlushPolicy.BATCH && pending >= flushInterval))
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes all the files
+     * @throws IOException If the files cannot be flushed
+     */
+    public void flush() throws IOException
+    {
+        result.flush();
+        report.flush();
+        backtrans.flush();
+        if (events != null)
+        {
+            events.flush();
+        }
+        pending = 0;
+    }
+
+    /**
+     * Flushes all the files and forces them to disk, so what has been written survives a crash of the machine. Compressed
+     * files are first waited for, so each ends with a whole gzip member.
+     * @throws IOException If the files cannot be flushed or forced
+     */
+    public void sync() throws IOException
+    {
+        flush();
+
+        if (gzip != null)
+        {
+            gzip.sync();
+        }
+
+        for (FileOutputStream out : streams)
+        {
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Flushes and closes all the files, waiting for compressed files to be written out. Every file is closed even if another
+     * one fails.
+     * @throws IOException The first failure met while closing
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+
+        for (Writer writer : new Writer[] {result, report, backtrans, events})
+        {
+            if (writer == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                writer.close();
+            }
+            catch (IOException ex)
+            {
+                if (failure == null)
+                {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (gzip != null)
+        {
+            try
+            {
+                gzip.close();
+            }
+            catch (IOException ex)
+            {
+                if (failure == null)
+                {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the compression thread of a sink that failed to open, keeping the failure that stopped it
+     */
+    private void closePipeline()
+    {
+        if (gzip != null)
+        {
+            try
+            {
+                gzip.close();
+            }
+            catch (IOException ex)
+            {
+                // The failure to open is the one reported
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Receives the progress of a running job
+ *
+ * Called on the thread running the job after each record is written, including the records still with the workers
+ * when the end of the input is reached, so implementations should return quickly.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public interface ProgressListener
+{
+    /**
+     * @param records The number of records written so far
+     * @param bytesRead The number of bytes of the input file read so far
+     * @param bytesTotal The length of the input file
+     */
+    void progress(int records, long bytesRead, long bytesTotal);
+}
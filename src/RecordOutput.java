@@ -0,0 +1,457 @@
+import java.util.Locale;
+
+
+/**
+ * The output produced for a single FASTA record
+ *
+ * Records are processed into one of these rather than straight into the job files, so that records processed on
+ * different threads can still be written to the result, report and back translation files in input order.
+ *
+ * Report lines are written in the format and at the verbosity of the job: the engine hands over each repeat and site as an
+ * event, and the event is turned into a prose line, a structured row in the events stream, or only a count, as asked.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class RecordOutput
+{
+
+    /**
+     * The number of the record within the job, counting from 1
+     */
+    public final int seqNumber;
+
+    /**
+     * The format of the report
+     */
+    public final ReportFormat format;
+
+    /**
+     * How much of the record goes into the report
+     */
+    public final ReportVerbosity verbosity;
+
+    final StringBuilder result = new StringBuilder();
+
+    final StringBuilder report = new StringBuilder();
+
+    final StringBuilder backtrans = new StringBuilder();
+
+    /**
+     * Rows for the events stream, written with structured reports at event verbosity
+     */
+    final StringBuilder events = new StringBuilder();
+
+    /**
+     * Timings and counters for the record, or null when the job does not collect them
+     */
+    public RecordStats stats;
+
+    /**
+     * The finished DNA, with the prefix and suffix when they are added
+     */
+    public String dna;
+
+    /**
+     * The translation of the finished DNA, as written to the back translation file
+     */
+    public String translation;
+
+    /**
+     * The offset in the input just after the record, journalled when the record is checkpointed
+     */
+    long inputEnd;
+
+    /**
+     * The codon adaptation index of the finished DNA, or -1 when the job does not score it
+     */
+    public double cai = -1;
+
+    /**
+     * The GC content of the finished DNA, from 0 to 1, or -1 when the job does not score it
+     */
+    public double gc = -1;
+
+    /**
+     * Every event, one tab separated line each, kept for the result cache; null unless asked for
+     */
+    private StringBuilder log;
+
+    private String header = "";
+
+    private int length;
+
+    /**
+     * The number of events of each kind
+     */
+    private final int[] counts = new int[ReportEvent.values().length];
+
+    /**
+     * The value given with the last event of each kind of record scope
+     */
+    private final int[] values = new int[ReportEvent.values().length];
+
+    /**
+     * @param seqNumber The number of the record within the job
+     */
+    public RecordOutput(int seqNumber)
+    {
+        this(seqNumber, ReportFormat.TEXT, ReportVerbosity.EVENT);
+    }
+
+    /**
+     * @param seqNumber The number of the record within the job
+     * @param format The format of the report
+     * @param verbosity How much of the record goes into the report
+     */
+    public RecordOutput(int seqNumber, ReportFormat format, ReportVerbosity verbosity)
+    {
+        this.seqNumber = seqNumber;
+        this.format = format;
+        this.verbosity = verbosity;
+    }
+
+    /**
+     * Adds a line for the result file
+     * @param content The string to be written
+     */
+    public void result(String content)
+    {
+        result.append(content).append(System.lineSeparator());
+    }
+
+    /**
+     * Adds a line for the report file
+     * @param content The string to be written
+     */
+    public void report(String content)
+    {
+        report.append(content).append(System.lineSeparator());
+    }
+
+    /**
+     * Adds a line for the back translation file
+     * @param content The string to be written
+     */
+    public void backtrans(String content)
+    {
+        backtrans.append(content).append(System.lineSeparator());
+    }
+
+    /**
+     * Starts the record in the report
+     * @param seqHeader The sequence header
+     * @param proteinLength The length of the protein
+     */
+    public void begin(String seqHeader, int proteinLength)
+    {
+        header = seqHeader;
+        length = proteinLength;
+
+        note("Runtime Information for sequence " + seqNumber);
+        note("Protein sequence is " + proteinLength + " amino acids long");
+    }
+
+    /**
+     * Adds a prose line about the whole record, written only in the text report from the record verbosity up
+     * @param content The string to be written
+     */
+    public void note(String content)
+    {
+        if (format == ReportFormat.TEXT && verbosity != ReportVerbosity.SUMMARY)
+        {
+            report(content);
+        }
+    }
+
+    /**
+     * Starts keeping every event, so the events of the record can be cached and replayed later
+     */
+    public void keepLog()
+    {
+        if (log == null)
+        {
+            log = new StringBuilder();
+        }
+    }
+
+    /**
+     * @return The events kept since {@link #keepLog()}, one tab separated line each
+     */
+    public String log()
+    {
+        return log == null ? "" : log.toString();
+    }
+
+    /**
+     * Reports an event
+     * @param kind The kind of event
+     * @param motif The motif concerned, or null
+     * @param position The position of the motif, or the count for events of record scope
+     * @param replacement The new sequence of the motif, or null
+     */
+    public void event(ReportEvent kind, String motif, int position, String replacement)
+    {
+        counts[kind.ordinal()]++;
+        values[kind.ordinal()] = position;
+
+        if (log != null)
+        {
+            log.append(kind.label).append('\t').append(motif == null ? "" : motif).append('\t').append(position)
+                    .append('\t').append(replacement == null ? "" : replacement).append('\n');
+        }
+
+        if (format == ReportFormat.TEXT)
+        {
+            if (verbosity == ReportVerbosity.EVENT || (kind.recordScope && verbosity == ReportVerbosity.RECORD))
+            {
+                report(kind.text(motif, position, replacement));
+            }
+        }
+        else if (verbosity == ReportVerbosity.EVENT)
+        {
+            if (format == ReportFormat.JSONL)
+            {
+                events.append("{\"record\":").append(seqNumber)
+                        .append(",\"event\":\"").append(kind.label)
+                        .append("\",\"motif\":").append(json(motif))
+                        .append(",\"position\":").append(position)
+                        .append(",\"replacement\":").append(json(replacement))
+                        .append('}').append(System.lineSeparator());
+            }
+            else
+            {
+                events.append(seqNumber).append('\t').append(kind.label)
+                        .append('\t').append(motif == null ? "" : motif)
+                        .append('\t').append(position)
+                        .append('\t').append(replacement == null ? "" : replacement)
+                        .append(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Reports again the events of a log made by {@link #keepLog()}
+     * @param events The log
+     */
+    public void replay(String events)
+    {
+        replay(events, 0, 0, 0, true);
+    }
+
+    /**
+     * Reports again the events of a log made by {@link #keepLog()} for a stretch of a longer sequence. Positions are moved by
+     * an offset and events placed outside the stretch are dropped; events of record scope are dropped too, being summed up
+     * for the whole record by the caller.
+     * @param events The log
+     * @param offset Added to the position of each event
+     * @param from The first position kept, after the offset is added
+     * @param to The position after the last kept
+     */
+    public void replay(String events, int offset, int from, int to)
+    {
+        replay(events, offset, from, to, false);
+    }
+
+    private void replay(String events, int offset, int from, int to, boolean whole)
+    {
+        int start = 0;
+
+        while (start < events.length())
+        {
+            int end = events.indexOf('\n', start);
+
+            if (end < 0)
+            {
+                end = events.length();
+            }
+
+            String[] parts = events.substring(start, end).split("\t", -1);
+            start = end + 1;
+
+            if (parts.length != 4)
+            {
+                continue;
+            }
+
+            ReportEvent kind = ReportEvent.forLabel(parts[0]);
+            int position = Integer.parseInt(parts[2]);
+
+            if (!whole)
+            {
+                position += offset;
+
+                if (kind.recordScope || position < from || position >= to)
+                {
+                    continue;
+                }
+            }
+
+            event(kind, parts[1].isEmpty() ? null : parts[1], position, parts[3].isEmpty() ? null : parts[3]);
+        }
+    }
+
+    /**
+     * @param kind A kind of event
+     * @return The value given with the last event of the kind for events of record scope, otherwise the number of events
+     */
+    int value(ReportEvent kind)
+    {
+        return kind.recordScope ? values[kind.ordinal()] : counts[kind.ordinal()];
+    }
+
+    /**
+     * Ends the record in the report
+     * @param codonRanks The number of codons of each rank, best first
+     */
+    public void finish(int[] codonRanks)
+    {
+        if (verbosity == ReportVerbosity.SUMMARY)
+        {
+            return;
+        }
+
+        if (format == ReportFormat.TEXT)
+        {
+            report(codonRanks[0] + " instances of 1st ranked codons.");
+            report(codonRanks[1] + " instances of 2nd ranked codons.");
+            report(codonRanks[2] + " instances of 3rd ranked codons.");
+            report(codonRanks[3] + " instances of 4th ranked codons.");
+            report(codonRanks[4] + " instances of 5th ranked codons.");
+            report(codonRanks[5] + " instances of 6th ranked codons.");
+
+            if (cai >= 0)
+            {
+                report(String.format(Locale.ROOT, "Codon adaptation index %.3f, GC content %.1f%%", cai, gc * 100));
+            }
+
+            report(System.lineSeparator() + "*" + System.lineSeparator());
+        }
+        else if (format == ReportFormat.JSONL)
+        {
+            StringBuilder row = new StringBuilder();
+
+            row.append("{\"type\":\"record\",\"record\":").append(seqNumber)
+                    .append(",\"header\":").append(json(header))
+                    .append(",\"length\":").append(length);
+
+            for (ReportEvent kind : ReportEvent.values())
+            {
+                row.append(",\"").append(kind.label).append("\":").append(kind.recordScope ? values[kind.ordinal()] : counts[kind.ordinal()]);
+            }
+
+            row.append(",\"ranks\":[");
+
+            for (int i = 0; i < codonRanks.length; i++)
+            {
+                row.append(i == 0 ? "" : ",").append(codonRanks[i]);
+            }
+
+            row.append(']');
+
+            if (cai >= 0)
+            {
+                row.append(String.format(Locale.ROOT, ",\"cai\":%.4f,\"gc\":%.4f", cai, gc));
+            }
+
+            row.append('}');
+            report(row.toString());
+        }
+        else
+        {
+            StringBuilder row = new StringBuilder();
+
+            row.append(seqNumber).append('\t').append(tsv(header)).append('\t').append(length);
+
+            for (ReportEvent kind : ReportEvent.values())
+            {
+                row.append('\t').append(kind.recordScope ? values[kind.ordinal()] : counts[kind.ordinal()]);
+            }
+
+            for (int rank : codonRanks)
+            {
+                row.append('\t').append(rank);
+            }
+
+            row.append('\t').append(cai >= 0 ? String.format(Locale.ROOT, "%.4f", cai) : "");
+            row.append('\t').append(cai >= 0 ? String.format(Locale.ROOT, "%.4f", gc) : "");
+
+            report(row.toString());
+        }
+    }
+
+    /**
+     * @return The header row of a TSV report
+     */
+    public static String tsvHeader()
+    {
+        StringBuilder row = new StringBuilder("record\theader\tlength");
+
+        for (ReportEvent kind : ReportEvent.values())
+        {
+            row.append('\t').append(kind.label);
+        }
+
+        for (int i = 1; i <= 6; i++)
+        {
+            row.append("\trank").append(i);
+        }
+
+        row.append("\tcai\tgc");
+
+        return row.toString();
+    }
+
+    /**
+     * @return The header row of a TSV events stream
+     */
+    public static String tsvEventsHeader()
+    {
+        return "record\tevent\tmotif\tposition\treplacement";
+    }
+
+    /**
+     * @param value A string, or null
+     * @return The string as a JSON value
+     */
+    static String json(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+
+        StringBuilder res = new StringBuilder(value.length() + 2).append('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\')
+            {
+                res.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                res.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                res.append(c);
+            }
+        }
+
+        return res.append('"').toString();
+    }
+
+    /**
+     * @return The string with tabs and line breaks made into spaces, to fit in one TSV field
+     */
+    private static String tsv(String value)
+    {
+        return value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Timings and counters for a single record
+ *
+ * Filled in by the engine while a record is processed, when the job collects statistics, and handed to {@link JobStats}
+ * with the output of the record. Stage times are in nanoseconds.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public class RecordStats
+{
+
+    /**
+     * The length of the protein
+     */
+    public int length;
+
+    /**
+     * Time spent choosing the first codons
+     */
+    public long translateNanos;
+
+    /**
+     * Time spent in the repeat check
+     */
+    public long repeatNanos;
+
+    /**
+     * Time spent in the restriction site check
+     */
+    public long siteNanos;
+
+    /**
+     * Time spent verifying the stretches changed by the checks
+     */
+    public long verifyNanos;
+
+    /**
+     * Time spent processing the record, from start to finish
+     */
+    public long totalNanos;
+
+    /**
+     * Codons replaced by another codon
+     */
+    public int substitutions;
+
+    /**
+     * Random draws made while looking for a replacement codon
+     */
+    public int draws;
+
+    /**
+     * Times a fail safe ran out: a codon for which no other codon was drawn, a site given up on, or the repeat verification
+     * stopping early
+     */
+    public int failSafes;
+
+    /**
+     * Codon substitutions turned down for putting a GC window out of range or making a homopolymer run too long
+     */
+    public int rejected;
+
+    /**
+     * True if the record was taken from the result cache; only counted in the summary of the job, as it depends on the
+     * order in which threads finish
+     */
+    public boolean cached;
+
+    /**
+     * Adds the stage times and counters of part of the record, e.g. one segment of a long protein
+     * @param part The timings and counters of the part
+     */
+    public void add(RecordStats part)
+    {
+        translateNanos += part.translateNanos;
+        repeatNanos += part.repeatNanos;
+        siteNanos += part.siteNanos;
+        verifyNanos += part.verifyNanos;
+        substitutions += part.substitutions;
+        draws += part.draws;
+        failSafes += part.failSafes;
+        rejected += part.rejected;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * The kinds of event reported while a record is processed
+ *
+ * Each kind knows the prose line written for it in the text report. Events of record scope sum up the record, and are
+ * written in the text report from the record verbosity up; the others only at event verbosity.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public enum ReportEvent
+{
+    /**
+     * A repetitive motif was recoded; the replacement holds its new sequence
+     */
+    REPEAT_FIXED("repeat_fixed", false),
+
+    /**
+     * A repetitive motif was left, as recoding it would have made a restriction site
+     */
+    REPEAT_KEPT("repeat_kept", false),
+
+    /**
+     * A restriction site was recoded
+     */
+    SITE_FIXED("site_fixed", false),
+
+    /**
+     * A restriction site could not be removed
+     */
+    SITE_KEPT("site_kept", false),
+
+    /**
+     * A restriction enzyme motif does not occur in the finished sequence
+     */
+    SITE_ABSENT("site_absent", false),
+
+    /**
+     * Codon choice could not avoid some restriction sites; the position holds their number
+     */
+    UNAVOIDABLE("unavoidable", true),
+
+    /**
+     * The repeat verification stopped early; the position holds the number of fixes made
+     */
+    VERIFY_STOPPED("verify_stopped", true),
+
+    /**
+     * Windows of the finished sequence have GC content outside the allowed range; the position holds their number
+     */
+    GC_WINDOWS("gc_windows", true),
+
+    /**
+     * The finished sequence has homopolymer runs longer than allowed; the position holds the number of positions starting one
+     */
+    LONG_RUNS("long_runs", true);
+
+    /**
+     * The name of the event in the structured reports
+     */
+    public final String label;
+
+    /**
+     * True for events that sum up the record rather than a single motif
+     */
+    public final boolean recordScope;
+
+    ReportEvent(String label, boolean recordScope)
+    {
+        this.label = label;
+        this.recordScope = recordScope;
+    }
+
+    /**
+     * @param motif The motif concerned
+     * @param position Its position, or the count for events of record scope
+     * @param replacement The new sequence of the motif, or null
+     * @return The line written for the event in the text report
+     */
+    public String text(String motif, int position, String replacement)
+    {
+        switch (this)
+        {
+            case REPEAT_FIXED:
+                return "Found reptitive motif " + motif + " at position " + position +  ". Replaced with sequence " + replacement;
+            case REPEAT_KEPT:
+                return "Could not remove reptitive motif " + motif + " at position " + position + " without making a restriction enzyme motif";
+            case SITE_FIXED:
+                return "Found restriction enzyme motif " + motif + " at position " + position;
+            case SITE_KEPT:
+                return "Could not remove restriction enzyme motif " + motif + " at position " + position;
+            case SITE_ABSENT:
+                return "Found no instance of restriction enzyme motif" + motif;
+            case UNAVOIDABLE:
+                return position + " restriction enzyme motifs could not be avoided by codon choice";
+            case VERIFY_STOPPED:
+                return "Repeat verification stopped after " + position + " fixes";
+            case GC_WINDOWS:
+                return position + " windows have GC content outside the allowed range";
+            default:
+                return position + " positions start a homopolymer run longer than allowed";
+        }
+    }
+
+    /**
+     * @param label The name of an event in the structured reports
+     * @return The event
+     */
+    public static ReportEvent forLabel(String label)
+    {
+        for (ReportEvent e : values())
+        {
+            if (e.label.equals(label))
+            {
+                return e;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown report event " + label);
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Determines how the report file of a job is written
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public enum ReportFormat
+{
+    /**
+     * Prose lines, as read by people
+     */
+    TEXT,
+
+    /**
+     * One JSON object per line: the job, then one per record, then the job summary. Events go to protein2bioBrick_events.jsonl.
+     */
+    JSONL,
+
+    /**
+     * Tab separated values: a header row, then one row per record; job information is on lines starting with #. Events go
+     * to protein2bioBrick_events.tsv.
+     */
+    TSV
+}
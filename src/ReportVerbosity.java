@@ -0,0 +1,26 @@
+/**
+ * Determines how much of each record is written to the report of a job
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public enum ReportVerbosity
+{
+    /**
+     * Only the job summary
+     */
+    SUMMARY,
+
+    /**
+     * The job summary and one entry per record, with its counts and codon ranks
+     */
+    RECORD,
+
+    /**
+     * As for records, plus every repeat and restriction site found
+     */
+    EVENT
+}
@@ -0,0 +1,281 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Content-addressed cache of finished records
+ *
+ * Records are keyed on a SHA-256 digest of the protein sequence and of every setting that decides the DNA made for it, so
+ * a protein seen again, in the same job or a later one, can skip reverse translation and motif repair. Recent entries are
+ * kept in memory, the least recently used being dropped once the cache is full; entries may also be kept on disk, one file
+ * per key, so a job run again in the same job directory finds them. All methods may be called from several threads.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class ResultCache
+{
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * A cached record: the DNA made for a protein, and the events reported while making it, as logged by
+     * {@link RecordOutput#keepLog()}
+     */
+    public static final class Entry
+    {
+        public final String dna;
+
+        public final String events;
+
+        public Entry(String dna, String events)
+        {
+            this.dna = dna;
+            this.events = events;
+        }
+    }
+
+    /**
+     * The memory tier, in order of last use
+     */
+    private final LinkedHashMap<String, Entry> memory;
+
+    /**
+     * The directory of the disk tier, or null if there is none
+     */
+    private final File diskDir;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity The largest number of entries kept in memory; 0 keeps none
+     * @param diskDir The directory in which entries are also kept on disk, or null to keep them in memory only
+     */
+    public ResultCache(final int capacity, File diskDir)
+    {
+        this.diskDir = diskDir;
+
+        memory = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResultCache.Entry> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+
+        if (diskDir != null)
+        {
+            diskDir.mkdirs();
+        }
+    }
+
+    /**
+     * Makes a key
+     * @param parts The protein sequence and the settings the result depends on, in a fixed order
+     * @return The key, a SHA-256 digest in hex
+     */
+    public static String key(Object... parts)
+    {
+        MessageDigest digest;
+
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(ex);
+        }
+
+        for (Object part : parts)
+        {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        byte[] hash = digest.digest();
+        char[] res = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++)
+        {
+            res[i * 2] = HEX[(hash[i] >> 4) & 15];
+            res[i * 2 + 1] = HEX[hash[i] & 15];
+        }
+
+        return new String(res);
+    }
+
+    /**
+     * Looks up a record, in memory first and then on disk
+     * @param key The key of the record
+     * @return The cached record, or null if there is none
+     */
+    public Entry get(String key)
+    {
+        Entry entry;
+
+        synchronized (memory)
+        {
+            entry = memory.get(key);
+        }
+
+        if (entry == null && diskDir != null)
+        {
+            entry = readDisk(key);
+
+            if (entry != null)
+            {
+                diskHits.incrementAndGet();
+
+                synchronized (memory)
+                {
+                    memory.put(key, entry);
+                }
+            }
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Stores a record
+     * @param key The key of the record
+     * @param entry The record
+     */
+    public void put(String key, Entry entry)
+    {
+        synchronized (memory)
+        {
+            memory.put(key, entry);
+        }
+
+        if (diskDir != null)
+        {
+            writeDisk(key, entry);
+        }
+    }
+
+    /**
+     * @return The number of lookups that found a record
+     */
+    public long hits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that found a record on disk only
+     */
+    public long diskHits()
+    {
+        return diskHits.get();
+    }
+
+    /**
+     * @return The number of lookups that found nothing
+     */
+    public long misses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Reads an entry from disk. The first line holds the DNA, the rest the events. An entry that cannot be read is
+     * treated as missing.
+     */
+    private Entry readDisk(String key)
+    {
+        File file = new File(diskDir, key + ".txt");
+
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            String dna = in.readLine();
+
+            if (dna == null)
+            {
+                return null;
+            }
+
+            StringBuilder events = new StringBuilder();
+            String line;
+
+            while ((line = in.readLine()) != null)
+            {
+                events.append(line).append('\n');
+            }
+
+            return new Entry(dna, events.toString());
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(ResultCache.class.getName()).log(Level.WARNING, "Cannot read cache entry " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to disk, by way of a temporary file, so a reader never sees half an entry
+     */
+    private void writeDisk(String key, Entry entry)
+    {
+        File file = new File(diskDir, key + ".txt");
+        File temp = new File(diskDir, key + "." + Thread.currentThread().getId() + ".tmp");
+
+        try
+        {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)))
+            {
+                out.write(entry.dna);
+                out.write('\n');
+                out.write(entry.events);
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(ResultCache.class.getName()).log(Level.WARNING, "Cannot write cache entry " + file, ex);
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Synthesis scores of a nucleotide sequence, kept up to date as codons are replaced
+ *
+ * Tracks the measures synthesis vendors screen on: the GC content of every window of a fixed length, counting the windows
+ * outside the allowed range, and the homopolymer runs longer than allowed; together with the codon adaptation index of the
+ * sequence against the codon table of the host. After the first pass over the sequence, a changed base only re-scores the
+ * windows and runs that hold it, so a codon change costs time in proportion to the window length, not the sequence
+ * length. A change can also be tried out first, to turn down one that would make the sequence worse.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class SequenceScore
+{
+
+    /**
+     * Relative adaptiveness given to a codon the host never uses, so it does not send the index to zero
+     */
+    private static final double MIN_ADAPTIVENESS = 0.01;
+
+    /**
+     * The bases as scored, kept apart from the sequence so a change can be scored against the old bases
+     */
+    private final byte[] seq;
+
+    /**
+     * The number of g and c bases in the window starting at each position
+     */
+    private final int[] gc;
+
+    private final int window;
+
+    /**
+     * Windows with fewer g and c bases than this are out of range
+     */
+    private final int gcLow;
+
+    /**
+     * Windows with more g and c bases than this are out of range
+     */
+    private final int gcHigh;
+
+    /**
+     * The longest run of one base allowed
+     */
+    private final int maxRun;
+
+    /**
+     * The natural log of the relative adaptiveness of each codon, or NaN for codons left out of the index: those of amino
+     * acids with a single codon, stops, and codons not in the table
+     */
+    private final double[] logAdaptiveness = new double[64];
+
+    private int gcTotal;
+
+    private int badWindows;
+
+    /**
+     * The number of positions starting a run of one base longer than allowed; a run one base too long counts once
+     */
+    private int badRuns;
+
+    private double logSum;
+
+    private int scoredCodons;
+
+    /**
+     * Scores a sequence
+     * @param nuc The nucleotide sequence, in frame
+     * @param table The codon table of the host, giving the adaptiveness of each codon
+     * @param window The length of the GC windows
+     * @param gcMin The lowest GC content allowed in a window, from 0 to 1
+     * @param gcMax The highest GC content allowed in a window, from 0 to 1
+     * @param maxRun The longest run of one base allowed
+     */
+    public SequenceScore(NucleotideBuffer nuc, CodonTable table, int window, double gcMin, double gcMax, int maxRun)
+    {
+        if (window < 1 || maxRun < 1 || gcMin > gcMax)
+        {
+            throw new IllegalArgumentException("Bad synthesis limits: window " + window + ", GC " + gcMin + " to " + gcMax + ", run " + maxRun);
+        }
+
+        this.window = window;
+        this.maxRun = maxRun;
+        gcLow = (int) Math.ceil(gcMin * window - 1e-9);
+        gcHigh = (int) Math.floor(gcMax * window + 1e-9);
+
+        for (int codon = 0; codon < 64; codon++)
+        {
+            int amino = table.aminoOf(codon);
+
+            if (amino < 0 || table.codonCount(amino) < 2 || table.amino(amino) == '*')
+            {
+                logAdaptiveness[codon] = Double.NaN;
+            }
+            else
+            {
+                logAdaptiveness[codon] = Math.log(Math.max(MIN_ADAPTIVENESS, table.adaptiveness(codon)));
+            }
+        }
+
+        int n = nuc.length();
+        seq = new byte[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            seq[i] = nuc.code(i);
+
+            if (isGc(seq[i]))
+            {
+                gcTotal++;
+            }
+        }
+
+        gc = new int[Math.max(0, n - window + 1)];
+        int count = 0;
+
+        for (int i = 0; i < n; i++)
+        {
+            count += isGc(seq[i]) ? 1 : 0;
+
+            if (i >= window)
+            {
+                count -= isGc(seq[i - window]) ? 1 : 0;
+            }
+            if (i >= window - 1)
+            {
+                gc[i - window + 1] = count;
+
+                if (outOfRange(count))
+                {
+                    badWindows++;
+                }
+            }
+        }
+
+        badRuns = longRuns(0, n - maxRun - 1);
+
+        for (int i = 0; i + 2 < n; i += 3)
+        {
+            addCodon(i, 1);
+        }
+    }
+
+    /**
+     * Re-scores a stretch after its bases have changed in the sequence
+     * @param nuc The nucleotide sequence
+     * @param start The first position changed
+     * @param end The position after the last
+     */
+    public void update(NucleotideBuffer nuc, int start, int end)
+    {
+        int first = start - start % 3;
+
+        for (int i = first; i < end && i + 2 < seq.length; i += 3)
+        {
+            addCodon(i, -1);
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            setBase(i, nuc.code(i));
+        }
+
+        for (int i = first; i < end && i + 2 < seq.length; i += 3)
+        {
+            addCodon(i, 1);
+        }
+    }
+
+    /**
+     * Tries out a codon change without making it
+     * @param pos The position of the first base of the codon
+     * @param codon The new codon number, as packed by {@link CodonTable}
+     * @return True if the change would put more windows out of the GC range or make more runs too long
+     */
+    public boolean worsens(int pos, int codon)
+    {
+        int before = badWindows + badRuns;
+        byte a = seq[pos];
+        byte b = seq[pos + 1];
+        byte c = seq[pos + 2];
+
+        setBase(pos, codon == CodonTable.NO_CODON ? NucleotideBuffer.UNKNOWN : (byte) (codon >> 4));
+        setBase(pos + 1, codon == CodonTable.NO_CODON ? NucleotideBuffer.UNKNOWN : (byte) ((codon >> 2) & 3));
+        setBase(pos + 2, codon == CodonTable.NO_CODON ? NucleotideBuffer.UNKNOWN : (byte) (codon & 3));
+
+        int after = badWindows + badRuns;
+
+        setBase(pos, a);
+        setBase(pos + 1, b);
+        setBase(pos + 2, c);
+
+        return after > before;
+    }
+
+    /**
+     * @return The number of windows whose GC content is out of range
+     */
+    public int gcWindows()
+    {
+        return badWindows;
+    }
+
+    /**
+     * @return The number of positions starting a run of one base longer than allowed
+     */
+    public int longRuns()
+    {
+        return badRuns;
+    }
+
+    /**
+     * @return The GC content of the whole sequence, from 0 to 1
+     */
+    public double gcContent()
+    {
+        return seq.length == 0 ? 0.0 : (double) gcTotal / seq.length;
+    }
+
+    /**
+     * @return The codon adaptation index: the geometric mean of the relative adaptiveness of the codons, from 0 to 1
+     */
+    public double cai()
+    {
+        return scoredCodons == 0 ? 1.0 : Math.exp(logSum / scoredCodons);
+    }
+
+    /**
+     * Changes one base, re-scoring the windows and runs that hold it
+     */
+    private void setBase(int i, byte base)
+    {
+        byte old = seq[i];
+
+        if (old == base)
+        {
+            return;
+        }
+
+        int delta = (isGc(base) ? 1 : 0) - (isGc(old) ? 1 : 0);
+
+        if (delta != 0)
+        {
+            gcTotal += delta;
+
+            for (int s = Math.max(0, i - window + 1); s <= i && s < gc.length; s++)
+            {
+                boolean wasOut = outOfRange(gc[s]);
+                gc[s] += delta;
+
+                if (outOfRange(gc[s]) != wasOut)
+                {
+                    badWindows += wasOut ? -1 : 1;
+                }
+            }
+        }
+
+        int from = i - maxRun;
+        int to = Math.min(i, seq.length - maxRun - 1);
+
+        badRuns -= longRuns(from, to);
+        seq[i] = base;
+        badRuns += longRuns(from, to);
+    }
+
+    /**
+     * Counts the positions, between two positions, that start a run of one base longer than allowed
+     * @param from The first start counted
+     * @param to The last start counted
+     */
+    private int longRuns(int from, int to)
+    {
+        from = Math.max(0, from);
+
+        if (to < from)
+        {
+            return 0;
+        }
+
+        int res = 0;
+        int run = 0;
+
+        for (int p = from; p <= to + maxRun; p++)
+        {
+            run = p > from && seq[p] == seq[p - 1] && seq[p] != NucleotideBuffer.UNKNOWN ? run + 1 : 1;
+
+            if (run > maxRun)
+            {
+                res++;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Adds the codon at a position to the adaptation index, or takes it away
+     */
+    private void addCodon(int pos, int sign)
+    {
+        int a = seq[pos];
+        int b = seq[pos + 1];
+        int c = seq[pos + 2];
+
+        if (a == NucleotideBuffer.UNKNOWN || b == NucleotideBuffer.UNKNOWN || c == NucleotideBuffer.UNKNOWN)
+        {
+            return;
+        }
+
+        double w = logAdaptiveness[(a << 4) | (b << 2) | c];
+
+        if (!Double.isNaN(w))
+        {
+            logSum += sign * w;
+            scoredCodons += sign;
+        }
+    }
+
+    private boolean outOfRange(int count)
+    {
+        return count < gcLow || count > gcHigh;
+    }
+
+    private static boolean isGc(byte base)
+    {
+        return base == 1 || base == 2;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Finds restriction sites in a nucleotide sequence
+ *
+ * Implemented by {@link MotifAutomaton}, which scans one base at a time, and optionally by a scanner that tests many
+ * positions at once, loaded by {@link SiteScanners}. Every implementation must give exactly the results of the automaton
+ * built from the same motifs, so the DNA made does not depend on which one ran. Implementations are immutable and may be
+ * shared between threads.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public interface SiteScanner
+{
+    /**
+     * Finds the site that ends first, among sites starting at or after a position and ending before another. When several
+     * motifs end at the same base, the longest is found, and of motifs of one length the lowest numbered.
+     * @param seq The nucleotide sequence
+     * @param from The first position a site may start at
+     * @param minEnd Sites ending before this position are passed over
+     * @param endBefore The scan stops here; only sites whose last base lies before it are found
+     * @param hit Receives the number of the motif found in its first element
+     * @return The start of the site, or -1 if there is none
+     */
+    int find(NucleotideBuffer seq, int from, int minEnd, int endBefore, int[] hit);
+
+    /**
+     * Finds which motifs occur anywhere in a sequence
+     * @param seq The nucleotide sequence
+     * @return True for each motif found, by motif number
+     */
+    boolean[] present(NucleotideBuffer seq);
+}
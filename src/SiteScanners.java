@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Chooses the site scanner for a set of motifs
+ *
+ * The vector scanner in src-incubator tests many positions per instruction with the jdk.incubator.vector module, which
+ * needs a newer Java than the rest of the program and must be added when starting it, with
+ * {@code --add-modules jdk.incubator.vector}. It is compiled apart and loaded by name, so the program still builds and runs
+ * on Java 8 without it. Before it is used, it is run side by side with the automaton on random sequences; if it is missing,
+ * cannot load, or gives any other result, the automaton is used instead.
+ *
+ * @author Devin Camenares, PhD
+ *
+ * @version 10-18-26
+ * @since 10-18-26
+ */
+
+public final class SiteScanners
+{
+
+    /**
+     * The class name of the vector scanner
+     */
+    private static final String VECTOR_CLASS = "VectorSiteScanner";
+
+    /**
+     * The number of random sequences the vector scanner is checked on
+     */
+    private static final int CHECK_ROUNDS = 40;
+
+    /**
+     * The number of finds checked on each random sequence
+     */
+    private static final int CHECK_FINDS = 10;
+
+    private static final long CHECK_SEED = 0x5eed5ca9L;
+
+    private SiteScanners()
+    {
+    }
+
+    /**
+     * Sets up the vector scanner for the motifs of an automaton
+     * @param automaton The automaton
+     * @return The vector scanner, or the automaton itself if the vector scanner is not available or does not agree with it
+     */
+    public static SiteScanner accelerated(MotifAutomaton automaton)
+    {
+        Logger logger = Logger.getLogger(SiteScanners.class.getName());
+        SiteScanner candidate;
+
+        try
+        {
+            candidate = (SiteScanner) Class.forName(VECTOR_CLASS).getConstructor(MotifAutomaton.class).newInstance(automaton);
+        }
+        catch (ReflectiveOperationException | LinkageError ex)
+        {
+            logger.log(Level.INFO, "Vector site scanner not available, scanning one base at a time: " + ex);
+            return automaton;
+        }
+
+        boolean agrees;
+
+        try
+        {
+            agrees = agrees(candidate, automaton);
+        }
+        catch (RuntimeException ex)
+        {
+            logger.log(Level.WARNING, "Vector site scanner failed its check", ex);
+            agrees = false;
+        }
+
+        if (!agrees)
+        {
+            logger.log(Level.WARNING, "Vector site scanner does not agree with the automaton, scanning one base at a time");
+            return automaton;
+        }
+
+        return candidate;
+    }
+
+    /**
+     * Checks a scanner against an automaton on random sequences, seeded with sites of the motifs and some unknown bases
+     * @param candidate The scanner checked
+     * @param automaton The automaton it must agree with
+     * @return True if every result was the same
+     */
+    static boolean agrees(SiteScanner candidate, MotifAutomaton automaton)
+    {
+        SplittableRandom random = new SplittableRandom(CHECK_SEED);
+        int[] expected = new int[1];
+        int[] actual = new int[1];
+
+        for (int round = 0; round < CHECK_ROUNDS; round++)
+        {
+            NucleotideBuffer seq = randomSequence(automaton, random.nextInt(2000), random);
+            int length = seq.length();
+
+            if (!Arrays.equals(candidate.present(seq), automaton.present(seq)))
+            {
+                return false;
+            }
+
+            for (int k = 0; k < CHECK_FINDS; k++)
+            {
+                int from = random.nextInt(-8, length + 8);
+                int minEnd = from + random.nextInt(-4, 64);
+                int endBefore = random.nextBoolean() ? length : minEnd + random.nextInt(length + 1);
+
+                int a = automaton.find(seq, from, minEnd, endBefore, expected);
+                int b = candidate.find(seq, from, minEnd, endBefore, actual);
+
+                if (a != b || (a >= 0 && expected[0] != actual[0]))
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Makes a random sequence, with a site of a random motif about every fifty bases and an unknown base about every two
+     * hundred
+     */
+    private static NucleotideBuffer randomSequence(MotifAutomaton automaton, int length, SplittableRandom random)
+    {
+        char[] res = new char[length];
+
+        for (int i = 0; i < length; i++)
+        {
+            res[i] = random.nextInt(200) == 0 ? 'n' : "acgt".charAt(random.nextInt(4));
+        }
+
+        for (int i = 0; automaton.motifCount() > 0 && i < length / 50; i++)
+        {
+            String motif = automaton.motif(random.nextInt(automaton.motifCount()));
+            int pos = random.nextInt(length);
+
+            for (int j = 0; j < motif.length() && pos + j < length; j++)
+            {
+                // A base the letter stands for, picked at random for a degenerate letter
+                int mask = MotifAutomaton.mask(motif.charAt(j));
+                int base;
+
+                do
+                {
+                    base = random.nextInt(4);
+                }
+                while ((mask & (1 << base)) == 0);
+
+                res[pos + j] = "acgt".charAt(base);
+            }
+        }
+
+        return new NucleotideBuffer(new String(res));
+    }
+}